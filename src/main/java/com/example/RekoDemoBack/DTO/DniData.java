@@ -1,6 +1,7 @@
 package com.example.RekoDemoBack.DTO;
 
 import java.util.Date;
+import java.util.Map;
 
 public record DniData(
         String numeroDni,
@@ -13,5 +14,14 @@ public record DniData(
         Date fechaVencimiento,
         String fotoPersona,
         String frontImageBase64,
-        String backImageBase64
-) {}
\ No newline at end of file
+        String backImageBase64,
+        Map<String, Object> metadata
+) {
+    // Constructor sin metadata para los flujos que no la generan (parser, mock)
+    public DniData(String numeroDni, String apellidos, String nombres, String fechaNacimiento, String sexo,
+                   String nacionalidad, Date fechaEmision, Date fechaVencimiento, String fotoPersona,
+                   String frontImageBase64, String backImageBase64) {
+        this(numeroDni, apellidos, nombres, fechaNacimiento, sexo, nacionalidad, fechaEmision, fechaVencimiento,
+                fotoPersona, frontImageBase64, backImageBase64, Map.of());
+    }
+}
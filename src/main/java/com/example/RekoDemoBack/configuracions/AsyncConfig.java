@@ -1,11 +1,13 @@
 package com.example.RekoDemoBack.configuracions;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 @Configuration
 @EnableAsync
@@ -28,5 +30,16 @@ public class AsyncConfig {
         System.out.println("✅ ThreadPoolTaskExecutor configurado: 4-8 threads");
         return executor;
     }
-}
 
+    /**
+     * Pool dedicado al preprocesamiento por bandas (fork/join).
+     * Separado del commonPool para que las bandas no compitan con los CompletableFuture.
+     */
+    @Bean(name = "imagePreprocessingPool", destroyMethod = "shutdown")
+    public ForkJoinPool imagePreprocessingPool(
+            @Value("${app.preprocessing.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        System.out.println("✅ ForkJoinPool de preprocesamiento configurado: " + threads + " threads");
+        return new ForkJoinPool(threads);
+    }
+}
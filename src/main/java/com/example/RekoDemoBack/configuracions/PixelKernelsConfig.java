@@ -0,0 +1,19 @@
+package com.example.RekoDemoBack.configuracions;
+
+import com.example.RekoDemoBack.service.PixelKernels;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PixelKernelsConfig {
+
+    /**
+     * Kernels de píxeles compartidos. Con app.simd.enabled=false se fuerzan los escalares aunque
+     * el módulo jdk.incubator.vector esté cargado.
+     */
+    @Bean
+    public PixelKernels pixelKernels(@Value("${app.simd.enabled:true}") boolean simdEnabled) {
+        return PixelKernels.install(simdEnabled);
+    }
+}
@@ -6,12 +6,12 @@ import com.example.RekoDemoBack.DTO.FaceComparisonResult;
 import com.example.RekoDemoBack.service.FaceComparisonService;
 import com.example.RekoDemoBack.service.RekognitionComparisonService;
 import com.example.RekoDemoBack.service.RekognitionLivenessService;
+import com.example.RekoDemoBack.service.UploadIngestionService;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.services.rekognition.model.*;
-import java.util.Base64;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -26,11 +26,15 @@ public class FaceComparisonController {
 
     private final FaceComparisonService faceComparisonService;
 
+    private final UploadIngestionService uploadIngestionService;
+
     public FaceComparisonController(RekognitionComparisonService comparisonService,
-                                    RekognitionLivenessService livenessService, FaceComparisonService faceComparisonService) {
+                                    RekognitionLivenessService livenessService, FaceComparisonService faceComparisonService,
+                                    UploadIngestionService uploadIngestionService) {
         this.comparisonService = comparisonService;
         this.livenessService = livenessService;
         this.faceComparisonService = faceComparisonService;
+        this.uploadIngestionService = uploadIngestionService;
     }
 
     /**
@@ -42,9 +46,6 @@ public class FaceComparisonController {
             @RequestParam("targetImage") MultipartFile targetImage) {
 
         try {
-            byte[] sourceBytes = sourceImage.getBytes();
-            byte[] targetBytes = targetImage.getBytes();
-
             String base64First = convertToBase64(sourceImage);
             String base64Second = convertToBase64(targetImage);
 
@@ -345,7 +346,7 @@ public class FaceComparisonController {
             throw new IOException("El archivo proporcionado es nulo o está vacío.");
         }
 
-        byte[] bytes = file.getBytes();
-        return Base64.getEncoder().encodeToString(bytes);
+        // Una sola lectura del upload; el Base64 se genera desde el buffer compartido
+        return uploadIngestionService.ingest(file).toBase64();
     }
 }
\ No newline at end of file
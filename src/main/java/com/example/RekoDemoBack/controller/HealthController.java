@@ -1,5 +1,13 @@
 package com.example.RekoDemoBack.controller;
 
+import com.example.RekoDemoBack.service.ImagePreprocessingService;
+import com.example.RekoDemoBack.service.LocalFaceDetector;
+import com.example.RekoDemoBack.service.OcrClientManager;
+import com.example.RekoDemoBack.service.OcrResultStore;
+import com.example.RekoDemoBack.service.RasterPool;
+import com.example.RekoDemoBack.service.RekognitionLivenessService;
+import com.example.RekoDemoBack.service.TieredOcrService;
+import com.example.RekoDemoBack.service.WTinyLfuCache;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -26,6 +34,27 @@ public class HealthController {
     @Value("${face.comparison.provider:reniec}")
     private String faceComparisonProvider;
 
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final RasterPool rasterPool;
+    private final LocalFaceDetector faceDetector;
+    private final RekognitionLivenessService livenessService;
+    private final OcrClientManager ocrClients;
+    private final OcrResultStore ocrResultStore;
+    private final TieredOcrService tieredOcrService;
+
+    public HealthController(ImagePreprocessingService imagePreprocessingService, RasterPool rasterPool,
+                            LocalFaceDetector faceDetector, RekognitionLivenessService livenessService,
+                            OcrClientManager ocrClients, OcrResultStore ocrResultStore,
+                            TieredOcrService tieredOcrService) {
+        this.imagePreprocessingService = imagePreprocessingService;
+        this.rasterPool = rasterPool;
+        this.faceDetector = faceDetector;
+        this.livenessService = livenessService;
+        this.ocrClients = ocrClients;
+        this.ocrResultStore = ocrResultStore;
+        this.tieredOcrService = tieredOcrService;
+    }
+
     @GetMapping
     public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> healthInfo = new HashMap<>();
@@ -54,6 +83,92 @@ public class HealthController {
         systemInfo.put("memory", memoryInfo);
         healthInfo.put("system", systemInfo);
 
+        // Estadísticas de la caché de preprocesamiento
+        WTinyLfuCache.Stats cacheStats = imagePreprocessingService.getCacheStats();
+        Map<String, Object> cacheInfo = new HashMap<>();
+        cacheInfo.put("entries", cacheStats.entries());
+        cacheInfo.put("usedBytes", formatBytes(cacheStats.weightedBytes()));
+        cacheInfo.put("maxBytes", formatBytes(cacheStats.maxBytes()));
+        cacheInfo.put("hits", cacheStats.hits());
+        cacheInfo.put("misses", cacheStats.misses());
+        cacheInfo.put("hitRate", cacheStats.hitRate());
+        cacheInfo.put("evictions", cacheStats.evictions());
+        cacheInfo.put("expirations", cacheStats.expirations());
+        cacheInfo.put("rejections", cacheStats.rejections());
+        cacheInfo.put("offHeapUsed", formatBytes(imagePreprocessingService.getOffHeapUsedBytes()));
+        healthInfo.put("imageCache", cacheInfo);
+
+        // Planes de preprocesamiento adaptativo: cuántas etapas se han omitido
+        ImagePreprocessingService.PlanStats planStats = imagePreprocessingService.getPlanStats();
+        Map<String, Object> planInfo = new HashMap<>();
+        planInfo.put("engine", imagePreprocessingService.getEngineName());
+        planInfo.put("planned", planStats.planned());
+        planInfo.put("resampleSkipped", planStats.resampleSkipped());
+        planInfo.put("contrastSkipped", planStats.contrastSkipped());
+        planInfo.put("sharpenSkipped", planStats.sharpenSkipped());
+        healthInfo.put("preprocessingPlans", planInfo);
+
+        // Pool de rasters: asignaciones evitadas en el camino de imagen
+        RasterPool.Stats poolStats = rasterPool.stats();
+        Map<String, Object> poolInfo = new HashMap<>();
+        poolInfo.put("leases", poolStats.leases());
+        poolInfo.put("reused", poolStats.reused());
+        poolInfo.put("allocated", poolStats.allocated());
+        poolInfo.put("reuseRate", poolStats.reuseRate());
+        poolInfo.put("released", poolStats.released());
+        poolInfo.put("dropped", poolStats.dropped());
+        poolInfo.put("pooledBytes", formatBytes(poolStats.pooledBytes()));
+        poolInfo.put("maxBytes", formatBytes(poolStats.maxBytes()));
+        healthInfo.put("rasterPool", poolInfo);
+
+        // Detector de rostro local para el recorte de la foto del DNI
+        LocalFaceDetector.Stats faceStats = faceDetector.stats();
+        Map<String, Object> faceInfo = new HashMap<>();
+        faceInfo.put("available", faceStats.available());
+        faceInfo.put("detected", faceStats.detected());
+        faceInfo.put("notFound", faceStats.notFound());
+        healthInfo.put("faceDetector", faceInfo);
+
+        // Recorte carnet de liveness: de dónde salió la caja del rostro (DetectFaces solo como respaldo)
+        RekognitionLivenessService.PassportBoxStats boxStats = livenessService.getPassportBoxStats();
+        Map<String, Object> boxInfo = new HashMap<>();
+        boxInfo.put("fromReference", boxStats.fromReference());
+        boxInfo.put("fromCache", boxStats.fromCache());
+        boxInfo.put("detectFacesCalls", boxStats.detectFacesCalls());
+        healthInfo.put("livenessPassportBoxes", boxInfo);
+
+        // Clientes OCR compartidos: llamadas en curso y latencia media por proveedor
+        OcrClientManager.Stats ocrStats = ocrClients.stats();
+        Map<String, Object> ocrInfo = new HashMap<>();
+        ocrInfo.put("vision", ocrClientInfo(ocrStats.vision()));
+        ocrInfo.put("documentAi", ocrClientInfo(ocrStats.documentAi()));
+        healthInfo.put("ocrClients", ocrInfo);
+
+        // Almacén persistente de resultados OCR: llamadas remotas evitadas en reentregas
+        OcrResultStore.Stats storeStats = ocrResultStore.stats();
+        Map<String, Object> storeInfo = new HashMap<>();
+        storeInfo.put("enabled", storeStats.enabled());
+        storeInfo.put("entries", storeStats.entries());
+        storeInfo.put("fileBytes", formatBytes(storeStats.fileBytes()));
+        storeInfo.put("maxBytes", formatBytes(storeStats.maxBytes()));
+        storeInfo.put("hits", storeStats.hits());
+        storeInfo.put("misses", storeStats.misses());
+        storeInfo.put("hitRate", storeStats.hitRate());
+        storeInfo.put("writes", storeStats.writes());
+        storeInfo.put("expired", storeStats.expired());
+        storeInfo.put("compactions", storeStats.compactions());
+        healthInfo.put("ocrResultStore", storeInfo);
+
+        // OCR escalonado: qué nivel satisface cada DNI e imágenes leídas por nivel (gasto medio por DNI)
+        TieredOcrService.Stats tierStats = tieredOcrService.stats();
+        Map<String, Object> tierInfo = new HashMap<>();
+        tierInfo.put("requests", tierStats.requests());
+        tierInfo.put("unsatisfied", tierStats.unsatisfied());
+        tierInfo.put("satisfiedByTier", tierStats.satisfiedByTier());
+        tierInfo.put("imagesByTier", tierStats.imagesByTier());
+        tierInfo.put("averageImagesPerDni", tierStats.averageImagesPerDni());
+        healthInfo.put("ocrTiers", tierInfo);
+
         return ResponseEntity.ok(healthInfo);
     }
 
@@ -65,6 +180,17 @@ public class HealthController {
         return ResponseEntity.ok(response);
     }
 
+    private Map<String, Object> ocrClientInfo(OcrClientManager.ClientStats stats) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("open", stats.open());
+        info.put("inFlight", stats.inFlight());
+        info.put("peakInFlight", stats.peakInFlight());
+        info.put("calls", stats.calls());
+        info.put("errors", stats.errors());
+        info.put("averageMillis", stats.averageMillis());
+        return info;
+    }
+
     private String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + " B";
         int exp = (int) (Math.log(bytes) / Math.log(1024));
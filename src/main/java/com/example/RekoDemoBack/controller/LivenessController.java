@@ -56,8 +56,9 @@ public class LivenessController {
         if (resp.referenceImage() != null && resp.referenceImage().bytes() != null) {
             byte[] originalImage = resp.referenceImage().bytes().asByteArray();
 
-            // 🚀 PROCESAMOS A TAMAÑO CARNET AQUÍ
-            byte[] passportImage = service.processToPassportSize(originalImage);
+            // 🚀 PROCESAMOS A TAMAÑO CARNET AQUÍ (con el boundingBox de la propia sesión, sin DetectFaces)
+            byte[] passportImage = service.processToPassportSize(
+                    originalImage, resp.referenceImage().boundingBox(), sessionId);
 
             Map<String, Object> referenceImageMap = new HashMap<>();
             referenceImageMap.put("Bytes", BinaryUtils.toBase64(passportImage));
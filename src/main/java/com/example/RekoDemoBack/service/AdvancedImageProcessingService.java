@@ -8,23 +8,37 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 @Service
 @AllArgsConstructor
 public class AdvancedImageProcessingService {
 
+    // Ancho del nivel reducido sobre el que se localiza el carnet
+    private static final int LOCATE_WIDTH = 400;
+
     private final ImageProcessingService baseImageProcessingService;
 
+    private final RasterPool rasterPool;
+
     /**
      * Paso intermedio: Detecta el área útil del DNI y delega el recorte del rostro.
      */
     public byte[] extractPersonPhoto(BufferedImage preprocessedImage) throws IOException {
         try {
-            // 1. Detectar bordes para eliminar cualquier residuo del fondo (mesa/dedos)
-            BufferedImage edges = detectEdges(preprocessedImage);
-            Rectangle bounds = findDocumentBounds(edges, preprocessedImage);
+            // 1. Localizar el carnet a baja resolución para eliminar el fondo (mesa/dedos) y la perspectiva
+            DocumentLocator.Quad quad = DocumentLocator.locate(preprocessedImage, LOCATE_WIDTH, rasterPool);
+            if (quad != null) {
+                BufferedImage card = DocumentLocator.crop(preprocessedImage, quad, rasterPool);
+                try {
+                    return baseImageProcessingService.extractPersonPhoto(card);
+                } finally {
+                    rasterPool.release(card);
+                }
+            }
 
-            // 2. Obtener el DNI "limpio" (solo la tarjeta)
+            // 2. Sin detección fiable: margen fijo sobre la imagen completa
+            Rectangle bounds = documentBounds(preprocessedImage.getWidth(), preprocessedImage.getHeight());
             BufferedImage correctedDni = preprocessedImage.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
 
             // 3. ENCAPSULACIÓN: Pasar el DNI limpio al extractor de rostros carnet
@@ -36,23 +50,93 @@ public class AdvancedImageProcessingService {
         }
     }
 
-    private BufferedImage detectEdges(BufferedImage image) {
-        BufferedImage edges = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        for (int y = 1; y < image.getHeight() - 1; y++) {
-            for (int x = 1; x < image.getWidth() - 1; x++) {
-                // Algoritmo de gradiente simple
-                int diff = Math.abs((image.getRGB(x-1, y) & 0xFF) - (image.getRGB(x+1, y) & 0xFF));
-                edges.setRGB(x, y, (diff << 16) | (diff << 8) | diff);
+    /**
+     * Variante sobre el JPEG preprocesado: calcula la zona de la foto desde la cabecera
+     * y decodifica solo esa región en lugar de la imagen completa. El preprocesamiento ya recortó
+     * el carnet, así que basta con el margen fijo para situar la foto.
+     */
+    public byte[] extractPersonPhoto(MultipartFile preprocessedJpeg) throws IOException {
+        if (baseImageProcessingService.isFaceDetectorAvailable()) {
+            byte[] photo = extractDetectedPhoto(preprocessedJpeg);
+            if (photo != null) {
+                return photo;
+            }
+        }
+        try (InputStream in = preprocessedJpeg.getInputStream()) {
+            BufferedImage face = ImageDecodePlanner.decodeRegion(in, this::photoRegion, rasterPool);
+            if (face != null) {
+                System.out.println("✂️ Foto decodificada por región: " + face.getWidth() + "x" + face.getHeight());
+                try {
+                    return baseImageProcessingService.enhancePersonPhoto(face);
+                } finally {
+                    rasterPool.release(face);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ Fallo en lectura por región, decodificando imagen completa: " + e.getMessage());
+        }
+        // Cerrar el stream devuelve la referencia al payload off-heap
+        try (InputStream in = preprocessedJpeg.getInputStream()) {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                throw new IOException("No se pudo decodificar la imagen para extraer la foto: "
+                        + preprocessedJpeg.getOriginalFilename());
+            }
+            return extractPersonPhoto(image);
+        }
+    }
+
+    /**
+     * Decodifica solo la zona de búsqueda (mitad izquierda del carnet) y recorta alrededor del rostro
+     * detectado; si no lo encuentra, usa la zona fija dentro de lo ya decodificado. Null si falla la lectura.
+     */
+    private byte[] extractDetectedPhoto(MultipartFile preprocessedJpeg) {
+        Rectangle[] decoded = new Rectangle[2];
+        try (InputStream in = preprocessedJpeg.getInputStream()) {
+            BufferedImage area = ImageDecodePlanner.decodeRegion(in, size -> {
+                decoded[0] = searchRegion(size);
+                decoded[1] = photoRegion(size);
+                return decoded[0];
+            }, rasterPool);
+            if (area == null) {
+                return null;
+            }
+            try {
+                Rectangle photo = baseImageProcessingService.detectPortrait(area);
+                if (photo == null) {
+                    photo = decoded[1].intersection(decoded[0]);
+                    photo.translate(-decoded[0].x, -decoded[0].y);
+                }
+                BufferedImage face = area.getSubimage(photo.x, photo.y, photo.width, photo.height);
+                return baseImageProcessingService.enhancePersonPhoto(face);
+            } finally {
+                rasterPool.release(area);
             }
+        } catch (Exception e) {
+            System.err.println("⚠️ Fallo en la detección por región, se usa el recorte fijo: " + e.getMessage());
+            return null;
         }
-        return edges;
     }
 
-    private Rectangle findDocumentBounds(BufferedImage edges, BufferedImage original) {
+    private Rectangle searchRegion(Dimension size) {
+        Rectangle bounds = documentBounds(size.width, size.height);
+        Rectangle search = ImageProcessingService.faceSearchRegion(bounds.width, bounds.height);
+        search.translate(bounds.x, bounds.y);
+        return search;
+    }
+
+    private Rectangle photoRegion(Dimension size) {
+        Rectangle bounds = documentBounds(size.width, size.height);
+        Rectangle photo = ImageProcessingService.photoRegion(bounds.width, bounds.height);
+        photo.translate(bounds.x, bounds.y);
+        return photo;
+    }
+
+    private Rectangle documentBounds(int width, int height) {
         // Para imágenes de baja resolución (624x393), el DNI suele ocupar casi todo.
         // Usamos un margen de seguridad de solo el 0.5%
-        int marginW = (int) (original.getWidth() * 0.005);
-        int marginH = (int) (original.getHeight() * 0.005);
-        return new Rectangle(marginW, marginH, original.getWidth() - (2 * marginW), original.getHeight() - (2 * marginH));
+        int marginW = (int) (width * 0.005);
+        int marginH = (int) (height * 0.005);
+        return new Rectangle(marginW, marginH, width - (2 * marginW), height - (2 * marginH));
     }
 }
\ No newline at end of file
@@ -13,7 +13,6 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,16 +23,20 @@ import java.util.regex.Matcher;
 @ConditionalOnProperty(name = "app.dni.mode", havingValue = "real")
 public class DniMockService implements IDniService {
 
-    private final VisionService visionService;
-    private final DniParserService dniParserService;
+    private final TieredOcrService tieredOcrService;
+    private final UploadIngestionService uploadIngestionService;
+    private final ImagePreprocessingService imagePreprocessingService;
     private final Map<String, DniData> mockPool = new HashMap<>();
 
     @Value("classpath:mocks/mi_foto_base64.txt")
     private Resource faceResource;
 
-    public DniMockService(VisionService visionService, DniParserService dniParserService) {
-        this.visionService = visionService;
-        this.dniParserService = dniParserService;
+    public DniMockService(TieredOcrService tieredOcrService,
+                          UploadIngestionService uploadIngestionService,
+                          ImagePreprocessingService imagePreprocessingService) {
+        this.tieredOcrService = tieredOcrService;
+        this.uploadIngestionService = uploadIngestionService;
+        this.imagePreprocessingService = imagePreprocessingService;
     }
 
     @jakarta.annotation.PostConstruct
@@ -58,16 +61,23 @@ public class DniMockService implements IDniService {
     }
 
     @Override
-    public DniData processDni(MultipartFile frontImage, MultipartFile backImage) throws Exception {
+    public DniData processDni(MultipartFile frontUpload, MultipartFile backUpload) throws Exception {
         System.out.println("🧪 MODO HÍBRIDO: OCR REAL + DATA MOCK");
 
-        // 1. EXTRAER TEXTO REAL USANDO GOOGLE VISION (Gratis/Low cost)
-        String frontText = visionService.extractTextFromImageEnhanced(frontImage);
-        String backText = visionService.extractTextFromImageEnhanced(backImage);
+        // Lectura única de cada upload (OCR y Base64 comparten el mismo buffer)
+        IngestedUpload frontImage = uploadIngestionService.ingest(frontUpload);
+        IngestedUpload backImage = uploadIngestionService.ingest(backUpload);
 
-        // 2. PARSEAR EL NÚMERO DE DNI REAL DE LA IMAGEN
-        DniData realDataFromOcr = dniParserService.parseDniData(frontText, backText);
+        // Vision solo necesita luminancia: se le envía la versión en gris de 8 bits
+        MultipartFile frontOcr = imagePreprocessingService.toOcrRendition(frontImage);
+        MultipartFile backOcr = imagePreprocessingService.toOcrRendition(backImage);
+
+        // 1 y 2. OCR ESCALONADO + PARSEO: pasada barata primero, el OCR mejorado solo para las caras con campos pendientes
+        // Cada nivel va en un único batchAnnotateImages; el resultado se reutiliza si el DNI no está en el pool
+        TieredOcrService.Result ocrResult = tieredOcrService.extract(frontOcr, backOcr);
+        DniData realDataFromOcr = ocrResult.report().data();
         String dniNumber = realDataFromOcr.numeroDni();
+        Map<String, Object> metadata = Map.of("ocr", ocrResult.toMetadata());
 
         System.out.println("🔍 OCR leyó el DNI: " + dniNumber);
 
@@ -83,22 +93,24 @@ public class DniMockService implements IDniService {
                     mockData.fechaNacimiento(), mockData.sexo(), mockData.nacionalidad(),
                     mockData.fechaEmision(), mockData.fechaVencimiento(),
                     mockData.fotoPersona(), // Esta es la foto que usará AWS Rekognition
-                    Base64.getEncoder().encodeToString(frontImage.getBytes()),
-                    Base64.getEncoder().encodeToString(backImage.getBytes())
+                    frontImage.toBase64(),
+                    backImage.toBase64(),
+                    metadata
             );
         }
 
         // 4. SI EL DNI NO ESTÁ EN EL POOL, puedes o devolver lo que leyó el OCR
         // o lanzar un error controlado para no ir a RENIEC.
         System.out.println("⚠️ DNI no está en el pool de pruebas. Retornando solo lectura de OCR.");
-        return dniProcessingLogic(frontImage, backImage);
+        return dniProcessingLogic(frontImage, backImage, ocrResult);
     }
 
-    private DniData dniProcessingLogic(MultipartFile front, MultipartFile back) throws Exception {
-        String frontText = visionService.extractTextFromImageEnhanced(front);
-        String backText = visionService.extractTextFromImageEnhanced(back);
-        DniData realDataFromOcr = dniParserService.parseDniData(frontText, backText);
+    private DniData dniProcessingLogic(IngestedUpload front, IngestedUpload back,
+                                       TieredOcrService.Result ocrResult) {
+        // Mismo resultado que ya leyó y parseó processDni: sin volver a llamar al OCR
+        DniData realDataFromOcr = ocrResult.report().data();
         String dniNumber = realDataFromOcr.numeroDni();
+        Map<String, Object> metadata = Map.of("ocr", ocrResult.toMetadata());
 
         if (mockPool.containsKey(dniNumber)) {
             DniData mockData = mockPool.get(dniNumber);
@@ -107,10 +119,17 @@ public class DniMockService implements IDniService {
                     mockData.fechaNacimiento(), mockData.sexo(), mockData.nacionalidad(),
                     mockData.fechaEmision(), mockData.fechaVencimiento(),
                     mockData.fotoPersona(),
-                    Base64.getEncoder().encodeToString(front.getBytes()),
-                    Base64.getEncoder().encodeToString(back.getBytes())
+                    front.toBase64(),
+                    back.toBase64(),
+                    metadata
             );
         }
-        return realDataFromOcr;
+        return new DniData(
+                realDataFromOcr.numeroDni(), realDataFromOcr.apellidos(), realDataFromOcr.nombres(),
+                realDataFromOcr.fechaNacimiento(), realDataFromOcr.sexo(), realDataFromOcr.nacionalidad(),
+                realDataFromOcr.fechaEmision(), realDataFromOcr.fechaVencimiento(),
+                null, null, null,
+                metadata
+        );
     }
-}
\ No newline at end of file
+}
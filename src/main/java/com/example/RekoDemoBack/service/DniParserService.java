@@ -7,6 +7,8 @@ import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import com.example.RekoDemoBack.DTO.DniData;
@@ -26,7 +28,106 @@ public class DniParserService {
 
     private static final Pattern MRZ_LINE_PATTERN = Pattern.compile("^[A-Z0-9<]{30,}$");
 
+    // Orígenes de cada campo y su confianza: la MRZ tiene formato fijo, el anverso depende de etiquetas
+    // y la estrategia de contexto es la última opción
+    private static final String SOURCE_MRZ = "mrz";
+    private static final String SOURCE_ANVERSO = "anverso";
+    private static final String SOURCE_CONTEXTO = "contexto";
+    private static final String SOURCE_DEFECTO = "defecto";
+    private static final Map<String, Double> SOURCE_CONFIDENCE = Map.of(
+            SOURCE_MRZ, 0.95,
+            SOURCE_ANVERSO, 0.75,
+            SOURCE_CONTEXTO, 0.5,
+            SOURCE_DEFECTO, 0.3
+    );
+
+    /**
+     * Origen (mrz, anverso, contexto, defecto) y confianza de un campo extraído.
+     */
+    public record FieldReport(String source, double confidence) {
+    }
+
+    /**
+     * Resultado del parseo con el detalle por campo. A diferencia de {@link #parseDniData} no falla si falta
+     * el número de DNI: {@code data} puede venir incompleto y {@code fields} solo lista lo que se extrajo.
+     */
+    public record ParseReport(DniData data, Map<String, FieldReport> fields) {
+
+        /**
+         * Campos de {@code required} que faltan o no llegan a {@code minConfidence}.
+         */
+        public List<String> missing(Collection<String> required, double minConfidence) {
+            List<String> missing = new ArrayList<>();
+            for (String field : required) {
+                FieldReport report = fields.get(field);
+                if (report == null || report.confidence() < minConfidence) {
+                    missing.add(field);
+                }
+            }
+            return missing;
+        }
+
+        public boolean hasMrz() {
+            return fields.values().stream().anyMatch(field -> SOURCE_MRZ.equals(field.source()));
+        }
+    }
+
     public DniData parseDniData(String frontText, String backText) {
+        Map<String, String> extractedData = extract(frontText, backText, new HashMap<>());
+
+        // Validación final
+        if (!hasValidDni(extractedData)) {
+            throw new RuntimeException("No se pudo extraer un número de DNI válido");
+        }
+        printExtractedData(extractedData);
+        return toDniData(extractedData);
+    }
+
+    /**
+     * Igual que {@link #parseDniData}, pero informa de qué campos se extrajeron, de dónde y con qué confianza,
+     * para que el OCR escalonado decida si hace falta otra pasada.
+     */
+    public ParseReport parseWithReport(String frontText, String backText) {
+        Map<String, String> sources = new HashMap<>();
+        Map<String, String> extractedData = extract(frontText, backText, sources);
+        if (!hasValidDni(extractedData)) {
+            extractedData.remove("numeroDni");
+        }
+        printExtractedData(extractedData);
+
+        Map<String, FieldReport> fields = new LinkedHashMap<>();
+        for (String field : extractedData.keySet()) {
+            String source = sources.getOrDefault(field, SOURCE_ANVERSO);
+            fields.put(field, new FieldReport(source, SOURCE_CONFIDENCE.get(source)));
+        }
+        return new ParseReport(toDniData(extractedData), fields);
+    }
+
+    /**
+     * Datos del DNI solo a partir de la MRZ TD1 del reverso, si sus dígitos de control cuadran y trae número,
+     * apellidos, nombres y sexo; null en otro caso. La fecha de emisión no está en la MRZ y queda vacía.
+     */
+    public DniData parseValidMrz(String backText) {
+        MrzTd1.Td1 mrz = MrzTd1.find(backText);
+        if (mrz == null || !mrz.checksValid() || !DNI_PATTERN.matcher(mrz.documentNumber()).matches()
+                || mrz.surnames().isEmpty() || mrz.givenNames().isEmpty() || mrz.sex() == null) {
+            return null;
+        }
+        System.out.println("✅ MRZ válida (dígitos de control OK): " + mrz.documentNumber());
+        return new DniData(
+                mrz.documentNumber(),
+                formatNameFromMrz(mrz.surnames()),
+                formatNameFromMrz(mrz.givenNames()),
+                mrz.birthDate(),
+                mrz.sex().equals("M") ? "MASCULINO" : "FEMENINO",
+                "PER".equals(mrz.nationality()) ? "PERUANA" : mrz.nationality(),
+                null,
+                parseDate(mrz.expiryDate()),
+                null, null, null
+        );
+    }
+
+    private Map<String, String> extract(String frontText, String backText, Map<String, String> sources) {
         System.out.println("\n========================================");
         System.out.println("PROCESANDO DNI PERUANO - VERSIÓN MEJORADA v5");
         System.out.println("========================================\n");
@@ -41,27 +142,50 @@ public class DniParserService {
         // PRIORIDAD 1: Procesar MRZ
         System.out.println("🎯 PRIORIDAD 1: Procesando MRZ...");
         boolean mrzEncontrado = procesarMRZGlobal(totalText, extractedData);
+        trackSources(extractedData, new HashMap<>(), sources, SOURCE_MRZ);
 
         // PRIORIDAD 2: Procesar Anverso
         System.out.println("🎯 PRIORIDAD 2: Extrayendo datos complementarios del Anverso...");
+        Map<String, String> before = new HashMap<>(extractedData);
         // CORRECCIÓN: Ahora pasamos los 3 argumentos correctamente
         extractFromAnversoMejorado(normalizedFront, extractedData, mrzEncontrado);
+        trackSources(extractedData, before, sources, SOURCE_ANVERSO);
 
         // ESTRATEGIA 3: Backup si aún faltan nombres
         if (isMissingNames(extractedData)) {
             System.out.println("🎯 PRIORIDAD 3: Usando estrategia alternativa de contexto...");
+            before = new HashMap<>(extractedData);
             extractFromAnversoAlternativo(normalizedFront, extractedData);
+            trackSources(extractedData, before, sources, SOURCE_CONTEXTO);
         }
 
-        // Validación final
-        if (!extractedData.containsKey("numeroDni") || extractedData.get("numeroDni").length() != 8) {
-            throw new RuntimeException("No se pudo extraer un número de DNI válido");
+        removeNotFoundFields(extractedData);
+        if (extractedData.putIfAbsent("nacionalidad", "PERUANA") == null) {
+            sources.put("nacionalidad", SOURCE_DEFECTO);
+        }
+        // Sin marca de sexo en el texto se mantiene el valor por defecto de siempre, pero con la
+        // confianza de un defecto: el OCR escalonado lo sigue considerando pendiente
+        if (extractedData.putIfAbsent("sexo", "MASCULINO") == null) {
+            sources.put("sexo", SOURCE_DEFECTO);
         }
+        return extractedData;
+    }
 
-        removeNotFoundFields(extractedData);
-        extractedData.putIfAbsent("nacionalidad", "PERUANA");
-        printExtractedData(extractedData);
+    // Un campo se atribuye a la etapa que lo creó o cambió su valor
+    private void trackSources(Map<String, String> data, Map<String, String> before,
+                              Map<String, String> sources, String source) {
+        data.forEach((field, value) -> {
+            if (!value.equals(before.get(field))) {
+                sources.put(field, source);
+            }
+        });
+    }
 
+    private boolean hasValidDni(Map<String, String> data) {
+        return data.containsKey("numeroDni") && data.get("numeroDni").length() == 8;
+    }
+
+    private DniData toDniData(Map<String, String> extractedData) {
         return new DniData(
                 extractedData.get("numeroDni"),
                 extractedData.get("apellidos"),
@@ -73,7 +197,7 @@ public class DniParserService {
                 extractedData.containsKey("fechaVencimiento") ? parseDate(extractedData.get("fechaVencimiento")) : null,
                 null, null, null
         );
-    }   
+    }
 
     // Método auxiliar para saber si faltan datos críticos
     private boolean isMissingNames(Map<String, String> data) {
@@ -584,9 +708,6 @@ public class DniParserService {
         } else if (text.toLowerCase().contains("sexo f") || text.contains(" F ") || text.matches(".*\\bF\\b.*")) {
             data.put("sexo", "FEMENINO");
             System.out.println("✅ Sexo: FEMENINO");
-        }else {
-            data.put("sexo","MASCULINO");
-            System.out.println("✅ Sexo: MASCULINO");
         }
     }
 
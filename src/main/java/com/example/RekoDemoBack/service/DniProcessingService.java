@@ -1,13 +1,14 @@
 package com.example.RekoDemoBack.service;
 
 import com.example.RekoDemoBack.DTO.DniData;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
@@ -16,60 +17,79 @@ import java.util.concurrent.ExecutionException;
 public class DniProcessingService {
 
     //private final VisionService visionService;
-    private final DocumentAiService documentAiService;
+    private final OcrService ocrService;
     private final DniParserService dniParserService;
     private final AdvancedImageProcessingService imageProcessingService;
     private final ImagePreprocessingService imagePreprocessingService;
+    private final UploadIngestionService uploadIngestionService;
 
-    public DniProcessingService(/*VisionService visionService,*/ DocumentAiService documentAiService,
+    // Si la MRZ del reverso es válida y completa se responde sin esperar al OCR del anverso
+    @Value("${app.dni.mrz-early-completion:true}")
+    private boolean mrzEarlyCompletion;
+
+    public DniProcessingService(/*VisionService visionService,*/ OcrService ocrService,
                                                                  DniParserService dniParserService,
                                                                  AdvancedImageProcessingService imageProcessingService,
-                                                                 ImagePreprocessingService imagePreprocessingService) {
+                                                                 ImagePreprocessingService imagePreprocessingService,
+                                                                 UploadIngestionService uploadIngestionService) {
         //this.visionService = visionService;
-        this.documentAiService = documentAiService;
+        this.ocrService = ocrService;
         this.dniParserService = dniParserService;
         this.imageProcessingService = imageProcessingService;
         this.imagePreprocessingService = imagePreprocessingService;
+        this.uploadIngestionService = uploadIngestionService;
     }
 
-    public DniData processDni(MultipartFile frontImage, MultipartFile backImage) throws Exception {
+    public DniData processDni(MultipartFile frontUpload, MultipartFile backUpload) throws Exception {
         System.out.println("\n========================================");
         System.out.println("PROCESANDO DNI (SIN BASE DE DATOS)");
         System.out.println("========================================\n");
 
+        CompletableFuture<ImagePreprocessingService.PreprocessingResult> frontPreprocessFuture = null;
+        CompletableFuture<ImagePreprocessingService.PreprocessingResult> backPreprocessFuture = null;
         try {
             long startTime = System.currentTimeMillis();
 
+            // Lectura única de cada upload; todas las etapas comparten el mismo buffer
+            IngestedUpload frontImage = uploadIngestionService.ingest(frontUpload);
+            IngestedUpload backImage = uploadIngestionService.ingest(backUpload);
+
             // 0. PREPROCESAR IMÁGENES EN PARALELO
             System.out.println("🔄 Preprocesando imágenes en paralelo...");
-            CompletableFuture<MultipartFile> frontPreprocessFuture = CompletableFuture.supplyAsync(() -> {
+            frontPreprocessFuture = CompletableFuture.supplyAsync(() -> {
                 try {
-                    return imagePreprocessingService.preprocessImage(frontImage);
+                    return imagePreprocessingService.preprocessImageWithPlan(frontImage);
                 } catch (Exception e) {
                     throw new RuntimeException("Error preprocesando imagen frontal", e);
                 }
             });
 
-            CompletableFuture<MultipartFile> backPreprocessFuture = CompletableFuture.supplyAsync(() -> {
+            backPreprocessFuture = CompletableFuture.supplyAsync(() -> {
                 try {
-                    return imagePreprocessingService.preprocessImage(backImage);
+                    return imagePreprocessingService.preprocessImageWithPlan(backImage);
                 } catch (Exception e) {
                     throw new RuntimeException("Error preprocesando imagen trasera", e);
                 }
             });
 
-            MultipartFile processedFrontImage = frontPreprocessFuture.get();
-            MultipartFile processedBackImage = backPreprocessFuture.get();
+            ImagePreprocessingService.PreprocessingResult frontResult = frontPreprocessFuture.get();
+            ImagePreprocessingService.PreprocessingResult backResult = backPreprocessFuture.get();
+            MultipartFile processedFrontImage = frontResult.image();
+            // El OCR recibe la versión en gris de 8 bits; la de color queda para la foto
+            MultipartFile ocrFrontImage = frontResult.ocrImage();
+            // Del reverso solo se usa la MRZ: el OCR recibe únicamente esa franja (o el reverso si no se localiza)
+            MultipartFile ocrBackImage = imagePreprocessingService.cropToMrzBand(backResult.ocrImage());
+            boolean backMrzBand = ocrBackImage != backResult.ocrImage();
             long preprocessTime = System.currentTimeMillis() - startTime;
             System.out.println("✅ Imágenes preprocesadas en " + preprocessTime + "ms");
 
-            // 1. EXTRAER TEXTO CON GOOGLE DOCUMENT AI EN PARALELO
+            // 1. EXTRAER TEXTO EN PARALELO (Document AI salvo que app.ocr.provider indique otro)
             System.out.println("🔍 Extrayendo texto en paralelo...");
             long ocrStartTime = System.currentTimeMillis();
 
             CompletableFuture<String> frontTextFuture = CompletableFuture.supplyAsync(() -> {
                 try {
-                    return documentAiService.extractTextFromImage(processedFrontImage);
+                    return ocrService.extractText(ocrFrontImage, "documentai");
                 } catch (Exception e) {
                     throw new RuntimeException("Error extrayendo texto frontal", e);
                 }
@@ -77,21 +97,35 @@ public class DniProcessingService {
 
             CompletableFuture<String> backTextFuture = CompletableFuture.supplyAsync(() -> {
                 try {
-                    return documentAiService.extractTextFromImage(processedBackImage);
+                    return ocrService.extractText(ocrBackImage, "documentai");
                 } catch (Exception e) {
                     throw new RuntimeException("Error extrayendo texto trasero", e);
                 }
             });
 
-            String frontText = frontTextFuture.get();
+            // El reverso (solo la franja MRZ) suele terminar antes: si su MRZ ya trae número, nombres y sexo
+            // con los dígitos de control correctos, el anverso solo aportaría la fecha de emisión
             String backText = backTextFuture.get();
+            DniData mrzData = null;
+            if (mrzEarlyCompletion && !frontTextFuture.isDone()) {
+                mrzData = dniParserService.parseValidMrz(backText);
+            }
+            boolean mrzEarly = mrzData != null;
+            String frontText = null;
+            if (mrzEarly) {
+                // La llamada en curso no se interrumpe, pero nadie la espera (su resultado queda en el almacén OCR)
+                frontTextFuture.cancel(true);
+                System.out.println("⚡ MRZ válida: se responde sin esperar al OCR del anverso");
+            } else {
+                frontText = frontTextFuture.get();
+            }
             long ocrTime = System.currentTimeMillis() - ocrStartTime;
             System.out.println("✅ Texto extraído exitosamente en " + ocrTime + "ms");
 
             // 2. PARSEAR DATOS DEL DNI
             System.out.println("📊 Parseando datos del DNI...");
             long parseStartTime = System.currentTimeMillis();
-            DniData extractedData = dniParserService.parseDniData(frontText, backText);
+            DniData extractedData = mrzEarly ? mrzData : dniParserService.parseDniData(frontText, backText);
 
             if (extractedData == null) {
                 throw new RuntimeException("No se pudieron extraer los datos del DNI.");
@@ -117,8 +151,8 @@ public class DniProcessingService {
 
             CompletableFuture<String> photoExtractionFuture = CompletableFuture.supplyAsync(() -> {
                 try {
-                    BufferedImage preprocessedBI = ImageIO.read(processedFrontImage.getInputStream());
-                    byte[] fotoPersona = imageProcessingService.extractPersonPhoto(preprocessedBI);
+                    // Solo se decodifica la región de la foto, no el JPEG preprocesado completo
+                    byte[] fotoPersona = imageProcessingService.extractPersonPhoto(processedFrontImage);
                     return Base64.getEncoder().encodeToString(fotoPersona);
                 } catch (Exception e) {
                     throw new RuntimeException("Error extrayendo foto", e);
@@ -127,7 +161,7 @@ public class DniProcessingService {
 
             CompletableFuture<String> frontBase64Future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    return Base64.getEncoder().encodeToString(frontImage.getBytes());
+                    return frontImage.toBase64();
                 } catch (Exception e) {
                     throw new RuntimeException("Error convirtiendo imagen frontal", e);
                 }
@@ -135,7 +169,7 @@ public class DniProcessingService {
 
             CompletableFuture<String> backBase64Future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    return Base64.getEncoder().encodeToString(backImage.getBytes());
+                    return backImage.toBase64();
                 } catch (Exception e) {
                     throw new RuntimeException("Error convirtiendo imagen trasera", e);
                 }
@@ -157,6 +191,17 @@ public class DniProcessingService {
             System.out.println("  - Procesamiento imágenes: " + imageProcessTime + "ms");
             System.out.println("========================================\n");
 
+            // 4. METADATA: plan de preprocesamiento aplicado a cada cara
+            Map<String, Object> preprocessing = new LinkedHashMap<>();
+            preprocessing.put("front", planMetadata(frontResult));
+            preprocessing.put("back", planMetadata(backResult));
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("preprocessing", preprocessing);
+            Map<String, Object> ocr = new LinkedHashMap<>();
+            ocr.put("backMrzBand", backMrzBand);
+            ocr.put("mrzEarlyCompletion", mrzEarly);
+            metadata.put("ocr", ocr);
+
             // 5. DEVOLVER DATOS COMPLETOS SIN PERSISTIR
             return new DniData(
                     extractedData.numeroDni(),
@@ -169,7 +214,8 @@ public class DniProcessingService {
                     extractedData.fechaVencimiento(),
                     fotoPersonaBase64,
                     frontImageBase64,
-                    backImageBase64
+                    backImageBase64,
+                    metadata
             );
 
         } catch (InterruptedException | ExecutionException e) {
@@ -180,6 +226,21 @@ public class DniProcessingService {
             System.err.println("❌ Error procesando DNI: " + e.getMessage());
             e.printStackTrace();
             throw e;
+        } finally {
+            // Las imágenes servidas desde la caché retienen sus páginas off-heap hasta aquí
+            releaseWhenDone(frontPreprocessFuture);
+            releaseWhenDone(backPreprocessFuture);
         }
     }
+
+    private void releaseWhenDone(CompletableFuture<ImagePreprocessingService.PreprocessingResult> future) {
+        if (future != null) {
+            future.thenAccept(ImagePreprocessingService.PreprocessingResult::release);
+        }
+    }
+
+    private Map<String, Object> planMetadata(ImagePreprocessingService.PreprocessingResult result) {
+        // Sin plan = el preprocesamiento falló y se usó la imagen original
+        return result.plan() != null ? result.plan().toMetadata() : Map.of("applied", false);
+    }
 }
\ No newline at end of file
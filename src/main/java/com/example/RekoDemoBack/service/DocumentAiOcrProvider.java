@@ -0,0 +1,49 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OCR con el procesador de Document AI (entidades "campo: valor #CONFID# x" + texto completo).
+ */
+@Service
+public class DocumentAiOcrProvider implements OcrProvider {
+
+    private final DocumentAiService documentAiService;
+
+    public DocumentAiOcrProvider(DocumentAiService documentAiService) {
+        this.documentAiService = documentAiService;
+    }
+
+    @Override
+    public String extractText(MultipartFile image) throws IOException {
+        return documentAiService.extractTextFromImage(image);
+    }
+
+    /**
+     * Document AI no tiene lote síncrono: una llamada por imagen. Una imagen que falla devuelve ""
+     * en su posición en vez de abortar el lote, como una cara sin texto en los demás proveedores.
+     */
+    @Override
+    public List<String> extractTexts(List<MultipartFile> images) {
+        List<String> texts = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            try {
+                texts.add(extractText(image));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️ Document AI falló para '" + image.getOriginalFilename() + "': " + e.getMessage());
+                texts.add("");
+            }
+        }
+        return texts;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "documentai";
+    }
+}
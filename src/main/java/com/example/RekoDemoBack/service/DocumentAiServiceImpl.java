@@ -21,53 +21,72 @@ public class DocumentAiServiceImpl implements DocumentAiService{
     @Value("${google.cloud.processor-id}") // El ID que copiaste del Document OCR
     private String processorId;
 
+    private final OcrClientManager ocrClients;
+    private final OcrResultStore resultStore;
+
+    public DocumentAiServiceImpl(OcrClientManager ocrClients, OcrResultStore resultStore) {
+        this.ocrClients = ocrClients;
+        this.resultStore = resultStore;
+    }
+
     @Override
     public String extractTextFromImage(MultipartFile file) throws IOException {
         String name = String.format("projects/%s/locations/%s/processors/%s",
                 projectId, location, processorId);
 
-        try (DocumentProcessorServiceClient client = DocumentProcessorServiceClient.create()) {
-            ByteString content = ByteString.copyFrom(file.getBytes());
-
-            RawDocument rawDocument = RawDocument.newBuilder()
-                    .setContent(content)
-                    .setMimeType("image/jpeg")
-                    .build();
-
-            ProcessRequest request = ProcessRequest.newBuilder()
-                    .setName(name)
-                    .setRawDocument(rawDocument)
-                    .build();
-
-            ProcessResponse result = client.processDocument(request);
-            Document document = result.getDocument();
-
-            // --- NUEVA LÓGICA DE EXTRACCIÓN ESTRUCTURADA ---
-            StringBuilder structuredData = new StringBuilder();
-
-            // Recorremos las entidades (campos que tú etiquetaste en la consola)
-            for (Document.Entity entity : document.getEntitiesList()) {
-                String fieldName = entity.getType();
-                String fieldValue = entity.getMentionText();
-                float confidence = entity.getConfidence();
-
-                // Concatenamos de una forma que tu Parser pueda entender fácilmente
-                // Ejemplo: "primer_apellido: ALIAGA | confianza: 0.98"
-                structuredData.append(fieldName).append(": ").append(fieldValue)
-                        .append(" #CONFID# ").append(confidence).append("\n");
-
-                // Si la entidad tiene sub-entidades (campos anidados)
-                for (Document.Entity subEntity : entity.getPropertiesList()) {
-                    structuredData.append("  -> ").append(subEntity.getType())
-                            .append(": ").append(subEntity.getMentionText()).append("\n");
-                }
+        // Mismo contenido y mismo procesador: el resultado guardado evita la llamada a Document AI
+        String storeKey = OcrResultStore.key(UploadIngestionService.sha256Hex(file), "documentai", processorId);
+        String stored = resultStore.get(storeKey);
+        if (stored != null) {
+            System.out.println("💾 Resultado de Document AI recuperado del almacén OCR");
+            return stored;
+        }
+
+        // Sin byte[] intermedio: uploads ingeridos se envuelven tal cual y el resto
+        // (p.ej. el tier off-heap de la caché de preprocesamiento) se lee en streaming
+        ByteString content = UploadIngestionService.toByteString(file);
+
+        RawDocument rawDocument = RawDocument.newBuilder()
+                .setContent(content)
+                .setMimeType(file.getContentType() != null ? file.getContentType() : "image/jpeg")
+                .build();
+
+        ProcessRequest request = ProcessRequest.newBuilder()
+                .setName(name)
+                .setRawDocument(rawDocument)
+                .build();
+
+        // Cliente compartido del proceso (OcrClientManager): sin canal ni handshake TLS por llamada
+        ProcessResponse result = ocrClients.documentAi(client -> client.processDocument(request));
+        Document document = result.getDocument();
+
+        // --- NUEVA LÓGICA DE EXTRACCIÓN ESTRUCTURADA ---
+        StringBuilder structuredData = new StringBuilder();
+
+        // Recorremos las entidades (campos que tú etiquetaste en la consola)
+        for (Document.Entity entity : document.getEntitiesList()) {
+            String fieldName = entity.getType();
+            String fieldValue = entity.getMentionText();
+            float confidence = entity.getConfidence();
+
+            // Concatenamos de una forma que tu Parser pueda entender fácilmente
+            // Ejemplo: "primer_apellido: ALIAGA | confianza: 0.98"
+            structuredData.append(fieldName).append(": ").append(fieldValue)
+                    .append(" #CONFID# ").append(confidence).append("\n");
+
+            // Si la entidad tiene sub-entidades (campos anidados)
+            for (Document.Entity subEntity : entity.getPropertiesList()) {
+                structuredData.append("  -> ").append(subEntity.getType())
+                        .append(": ").append(subEntity.getMentionText()).append("\n");
             }
+        }
 
-            // También incluimos el texto completo por si el Custom Extractor falla en algún campo
-            structuredData.append("--- RAW TEXT START ---\n");
-            structuredData.append(document.getText());
+        // También incluimos el texto completo por si el Custom Extractor falla en algún campo
+        structuredData.append("--- RAW TEXT START ---\n");
+        structuredData.append(document.getText());
 
-            return structuredData.toString();
-        }
+        String extracted = structuredData.toString();
+        resultStore.put(storeKey, extracted);
+        return extracted;
     }
 }
\ No newline at end of file
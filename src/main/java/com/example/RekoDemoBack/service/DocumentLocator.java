@@ -0,0 +1,438 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Localiza el carnet dentro de la foto sobre una versión reducida (~400px de ancho) y devuelve
+ * las cuatro esquinas en coordenadas de la imagen completa.
+ *
+ * Por cada lado se barre desde el exterior hacia dentro buscando el primer borde fuerte (Sobel),
+ * y a esos puntos se ajusta una recta descartando atípicos. Un lado sin recta consistente
+ * (el carnet toca el borde de la foto) se sustituye por el borde de la imagen; si no se encuentra
+ * ningún lado se devuelve null y el llamador usa el margen fijo.
+ */
+final class DocumentLocator {
+
+    // Banda central que se barre en cada lado: las esquinas redondeadas meten ruido en las rectas
+    private static final double SCAN_FROM = 0.15;
+    private static final double SCAN_TO = 0.85;
+
+    // Una recta es válida si explica al menos esta fracción de las líneas barridas con poco residuo
+    private static final double MIN_INLIER_RATIO = 0.7;
+    private static final int MIN_INLIERS = 12;
+    private static final double MAX_RESIDUAL_RMS = 1.0;
+
+    // Lados opuestos de un carnet fotografiado con perspectiva moderada son casi paralelos
+    private static final double MAX_OPPOSITE_SLOPE_DIFF = 0.3;
+
+    // Un carnet más pequeño que esto respecto a la foto se considera una detección errónea
+    private static final double MIN_AREA_RATIO = 0.3;
+
+    // Umbral mínimo de |gx| + |gy| para considerar un píxel borde
+    private static final int MIN_EDGE_STRENGTH = 96;
+
+    private DocumentLocator() {
+    }
+
+    /**
+     * Esquinas del documento en sentido horario desde arriba a la izquierda.
+     */
+    record Quad(Point2D.Double topLeft, Point2D.Double topRight,
+                Point2D.Double bottomRight, Point2D.Double bottomLeft) {
+
+        Quad scaled(double factor) {
+            return new Quad(scale(topLeft, factor), scale(topRight, factor),
+                    scale(bottomRight, factor), scale(bottomLeft, factor));
+        }
+
+        int outputWidth() {
+            return (int) Math.round(Math.max(topLeft.distance(topRight), bottomLeft.distance(bottomRight)));
+        }
+
+        int outputHeight() {
+            return (int) Math.round(Math.max(topLeft.distance(bottomLeft), topRight.distance(bottomRight)));
+        }
+
+        double area() {
+            Point2D.Double[] p = {topLeft, topRight, bottomRight, bottomLeft};
+            double sum = 0;
+            for (int i = 0; i < 4; i++) {
+                Point2D.Double a = p[i];
+                Point2D.Double b = p[(i + 1) % 4];
+                sum += a.x * b.y - b.x * a.y;
+            }
+            return Math.abs(sum) / 2;
+        }
+
+        /**
+         * Rectángulo envolvente si las esquinas ya forman un rectángulo alineado (tolerancia en píxeles), o null.
+         */
+        Rectangle asAxisAligned(double tolerance) {
+            if (Math.abs(topLeft.x - bottomLeft.x) > tolerance || Math.abs(topRight.x - bottomRight.x) > tolerance
+                    || Math.abs(topLeft.y - topRight.y) > tolerance || Math.abs(bottomLeft.y - bottomRight.y) > tolerance) {
+                return null;
+            }
+            int x0 = (int) Math.round(Math.min(topLeft.x, bottomLeft.x));
+            int y0 = (int) Math.round(Math.min(topLeft.y, topRight.y));
+            int x1 = (int) Math.round(Math.max(topRight.x, bottomRight.x));
+            int y1 = (int) Math.round(Math.max(bottomLeft.y, bottomRight.y));
+            return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        }
+
+        private static Point2D.Double scale(Point2D.Double p, double factor) {
+            return new Point2D.Double(p.x * factor, p.y * factor);
+        }
+    }
+
+    /**
+     * Recta x = slope * t + intercept (t es la coordenada a lo largo del lado).
+     */
+    private record Line(double slope, double intercept) {
+        double at(double t) {
+            return slope * t + intercept;
+        }
+    }
+
+    /**
+     * Localiza el documento trabajando a {@code locateWidth} píxeles de ancho. Null si no hay detección fiable.
+     */
+    static Quad locate(BufferedImage image, int locateWidth, RasterPool pool) {
+        int fullWidth = image.getWidth();
+        int fullHeight = image.getHeight();
+        int w = Math.min(locateWidth, fullWidth);
+        int h = Math.max(1, (int) Math.round(fullHeight * ((double) w / fullWidth)));
+        if (w < 32 || h < 32) {
+            return null;
+        }
+
+        // 1. Nivel reducido de la pirámide, en gris
+        BufferedImage small = pool.leaseImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = small.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, w, h, null);
+        g.dispose();
+        byte[] gray = pool.leaseBytes(w * h);
+        PixelKernels.get().toGray(((DataBufferInt) small.getRaster().getDataBuffer()).getData(), gray, w * h);
+        pool.release(small);
+
+        // 2. Magnitud de gradiente y umbral adaptativo
+        int[] magnitude = pool.leaseInts(w * h);
+        try {
+            sobel(gray, magnitude, w, h);
+            int threshold = Math.max(MIN_EDGE_STRENGTH, percentile(magnitude, w * h, 0.90));
+
+            // 3. Una recta por lado; los lados sin recta se sustituyen por el borde de la imagen
+            Line left = fitSide(magnitude, w, h, threshold, Side.LEFT);
+            Line right = fitSide(magnitude, w, h, threshold, Side.RIGHT);
+            Line top = fitSide(magnitude, w, h, threshold, Side.TOP);
+            Line bottom = fitSide(magnitude, w, h, threshold, Side.BOTTOM);
+            if (!parallel(left, right) || !parallel(top, bottom)) {
+                return null;
+            }
+            if (left == null && right == null && top == null && bottom == null) {
+                return null;
+            }
+            if (left == null) left = new Line(0, 0);
+            if (right == null) right = new Line(0, w - 1);
+            if (top == null) top = new Line(0, 0);
+            if (bottom == null) bottom = new Line(0, h - 1);
+
+            Quad quad = new Quad(intersect(left, top), intersect(right, top),
+                    intersect(right, bottom), intersect(left, bottom));
+            if (!isPlausible(quad, w, h)) {
+                return null;
+            }
+            return quad.scaled((double) fullWidth / w);
+        } finally {
+            pool.release(gray);
+            pool.release(magnitude);
+        }
+    }
+
+    /**
+     * Recorta el documento a un rectángulo. Si el cuadrilátero ya está alineado basta con copiar
+     * el rectángulo; si no, se corrige la perspectiva con una homografía y muestreo bilineal.
+     * El resultado (TYPE_INT_RGB) sale del pool.
+     */
+    static BufferedImage crop(BufferedImage image, Quad quad, RasterPool pool) {
+        Rectangle bounds = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+        Rectangle aligned = quad.asAxisAligned(image.getWidth() * 0.005);
+        if (aligned != null) {
+            Rectangle region = aligned.intersection(bounds);
+            BufferedImage out = pool.leaseImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = out.createGraphics();
+            g.drawImage(image, 0, 0, region.width, region.height,
+                    region.x, region.y, region.x + region.width, region.y + region.height, null);
+            g.dispose();
+            return out;
+        }
+
+        int outW = Math.max(1, quad.outputWidth());
+        int outH = Math.max(1, quad.outputHeight());
+        double[] m = homography(outW, outH, quad);
+
+        int srcW = image.getWidth();
+        int srcH = image.getHeight();
+        // getRGB sobre un 3BYTE_BGR es lento: se convierte una vez con Java2D a un INT_RGB del pool
+        BufferedImage rgb = image;
+        if (image.getType() != BufferedImage.TYPE_INT_RGB || image.getRaster().getParent() != null) {
+            rgb = pool.leaseImage(srcW, srcH, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        int[] src = ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData();
+        BufferedImage out = pool.leaseImage(outW, outH, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+
+        for (int y = 0; y < outH; y++) {
+            double py = y + 0.5;
+            // Numeradores y denominador avanzan linealmente en x: una división por píxel
+            double nx = m[0] * 0.5 + m[1] * py + m[2];
+            double ny = m[3] * 0.5 + m[4] * py + m[5];
+            double z = m[6] * 0.5 + m[7] * py + m[8];
+            int row = y * outW;
+            for (int x = 0; x < outW; x++) {
+                double inverse = 1.0 / z;
+                dst[row + x] = bilinear(src, srcW, srcH, nx * inverse - 0.5, ny * inverse - 0.5);
+                nx += m[0];
+                ny += m[3];
+                z += m[6];
+            }
+        }
+        if (rgb != image) {
+            pool.release(rgb);
+        }
+        return out;
+    }
+
+    private enum Side { LEFT, RIGHT, TOP, BOTTOM }
+
+    /**
+     * Barre el lado desde fuera hacia dentro (hasta la mitad) y ajusta una recta a los primeros bordes.
+     */
+    private static Line fitSide(int[] magnitude, int w, int h, int threshold, Side side) {
+        boolean vertical = side == Side.LEFT || side == Side.RIGHT;
+        int along = vertical ? h : w;
+        int across = vertical ? w : h;
+        int from = (int) (along * SCAN_FROM);
+        int to = (int) (along * SCAN_TO);
+
+        double[] ts = new double[to - from];
+        double[] positions = new double[to - from];
+        int count = 0;
+        for (int t = from; t < to; t++) {
+            for (int step = 1; step < across / 2; step++) {
+                int pos = (side == Side.LEFT || side == Side.TOP) ? step : across - 1 - step;
+                int index = vertical ? t * w + pos : pos * w + t;
+                if (magnitude[index] >= threshold) {
+                    ts[count] = t;
+                    positions[count] = peak(magnitude, w, vertical, t, pos, side);
+                    count++;
+                    break;
+                }
+            }
+        }
+        return robustFit(ts, positions, count, to - from);
+    }
+
+    /**
+     * Sigue el barrido mientras el gradiente crece: la recta pasa por el centro del borde, no por su flanco exterior.
+     */
+    private static int peak(int[] magnitude, int w, boolean vertical, int t, int pos, Side side) {
+        int direction = (side == Side.LEFT || side == Side.TOP) ? 1 : -1;
+        int limit = vertical ? w : magnitude.length / w;
+        int best = pos;
+        for (int next = pos + direction; next > 0 && next < limit - 1; next += direction) {
+            int current = vertical ? t * w + best : best * w + t;
+            int candidate = vertical ? t * w + next : next * w + t;
+            if (magnitude[candidate] <= magnitude[current]) break;
+            best = next;
+        }
+        return best;
+    }
+
+    private static boolean parallel(Line a, Line b) {
+        return a == null || b == null || Math.abs(a.slope() - b.slope()) <= MAX_OPPOSITE_SLOPE_DIFF;
+    }
+
+    /**
+     * Mínimos cuadrados iterados: se descartan los puntos a más de 2.5 desviaciones (mínimo 1.5px).
+     */
+    private static Line robustFit(double[] ts, double[] positions, int count, int scanned) {
+        if (count < MIN_INLIERS) {
+            return null;
+        }
+        boolean[] inlier = new boolean[count];
+        Arrays.fill(inlier, true);
+        Line line = null;
+        int inliers = count;
+        double rms = 0;
+
+        for (int iteration = 0; iteration < 4; iteration++) {
+            line = leastSquares(ts, positions, inlier, count);
+            if (line == null) {
+                return null;
+            }
+            double sumSq = 0;
+            for (int i = 0; i < count; i++) {
+                if (inlier[i]) {
+                    double r = positions[i] - line.at(ts[i]);
+                    sumSq += r * r;
+                }
+            }
+            rms = Math.sqrt(sumSq / inliers);
+            double tolerance = Math.max(1.5, 2.5 * rms);
+            inliers = 0;
+            for (int i = 0; i < count; i++) {
+                inlier[i] = Math.abs(positions[i] - line.at(ts[i])) <= tolerance;
+                if (inlier[i]) inliers++;
+            }
+        }
+        if (inliers < MIN_INLIERS || inliers < scanned * MIN_INLIER_RATIO || rms > MAX_RESIDUAL_RMS) {
+            return null;
+        }
+        // Un borde de carnet no se inclina más de ~25º en una foto razonable
+        return Math.abs(line.slope()) <= 0.45 ? line : null;
+    }
+
+    private static Line leastSquares(double[] ts, double[] positions, boolean[] inlier, int count) {
+        double n = 0, sumT = 0, sumP = 0, sumTT = 0, sumTP = 0;
+        for (int i = 0; i < count; i++) {
+            if (!inlier[i]) continue;
+            n++;
+            sumT += ts[i];
+            sumP += positions[i];
+            sumTT += ts[i] * ts[i];
+            sumTP += ts[i] * positions[i];
+        }
+        double denominator = n * sumTT - sumT * sumT;
+        if (n < 2 || Math.abs(denominator) < 1e-9) {
+            return null;
+        }
+        double slope = (n * sumTP - sumT * sumP) / denominator;
+        return new Line(slope, (sumP - slope * sumT) / n);
+    }
+
+    /**
+     * Intersección de un lado vertical (x = a*y + b) con uno horizontal (y = c*x + d).
+     */
+    private static Point2D.Double intersect(Line vertical, Line horizontal) {
+        double a = vertical.slope(), b = vertical.intercept();
+        double c = horizontal.slope(), d = horizontal.intercept();
+        double y = (c * b + d) / (1 - a * c);
+        return new Point2D.Double(a * y + b, y);
+    }
+
+    private static boolean isPlausible(Quad quad, int w, int h) {
+        if (quad.area() < MIN_AREA_RATIO * w * h) {
+            return false;
+        }
+        double slack = 0.02 * Math.max(w, h);
+        for (Point2D.Double p : new Point2D.Double[]{quad.topLeft(), quad.topRight(), quad.bottomRight(), quad.bottomLeft()}) {
+            if (p.x < -slack || p.y < -slack || p.x > w - 1 + slack || p.y > h - 1 + slack) {
+                return false;
+            }
+        }
+        return quad.topLeft().x < quad.topRight().x && quad.bottomLeft().x < quad.bottomRight().x
+                && quad.topLeft().y < quad.bottomLeft().y && quad.topRight().y < quad.bottomRight().y;
+    }
+
+    private static void sobel(byte[] gray, int[] magnitude, int w, int h) {
+        Arrays.fill(magnitude, 0, w * h, 0);
+        for (int y = 1; y < h - 1; y++) {
+            int row = y * w;
+            for (int x = 1; x < w - 1; x++) {
+                int i = row + x;
+                int tl = gray[i - w - 1] & 0xFF, tc = gray[i - w] & 0xFF, tr = gray[i - w + 1] & 0xFF;
+                int ml = gray[i - 1] & 0xFF, mr = gray[i + 1] & 0xFF;
+                int bl = gray[i + w - 1] & 0xFF, bc = gray[i + w] & 0xFF, br = gray[i + w + 1] & 0xFF;
+                int gx = (tr + 2 * mr + br) - (tl + 2 * ml + bl);
+                int gy = (bl + 2 * bc + br) - (tl + 2 * tc + tr);
+                magnitude[i] = Math.abs(gx) + Math.abs(gy);
+            }
+        }
+    }
+
+    private static int percentile(int[] values, int length, double fraction) {
+        // |gx| + |gy| <= 2040: histograma directo
+        int[] histogram = new int[2041];
+        for (int i = 0; i < length; i++) {
+            histogram[values[i]]++;
+        }
+        long threshold = (long) Math.ceil(length * fraction);
+        long accumulated = 0;
+        for (int v = 0; v < histogram.length; v++) {
+            accumulated += histogram[v];
+            if (accumulated >= threshold) return v;
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * Homografía que lleva el rectángulo de salida [0,w]x[0,h] al cuadrilátero de origen.
+     */
+    static double[] homography(int w, int h, Quad quad) {
+        double[][] from = {{0, 0}, {w, 0}, {w, h}, {0, h}};
+        Point2D.Double[] to = {quad.topLeft(), quad.topRight(), quad.bottomRight(), quad.bottomLeft()};
+
+        double[][] a = new double[8][9];
+        for (int i = 0; i < 4; i++) {
+            double x = from[i][0], y = from[i][1];
+            double u = to[i].x, v = to[i].y;
+            a[2 * i] = new double[]{x, y, 1, 0, 0, 0, -u * x, -u * y, u};
+            a[2 * i + 1] = new double[]{0, 0, 0, x, y, 1, -v * x, -v * y, v};
+        }
+
+        // Eliminación gaussiana con pivote parcial sobre el sistema 8x8 aumentado
+        for (int col = 0; col < 8; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < 8; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) pivot = row;
+            }
+            double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+            for (int row = 0; row < 8; row++) {
+                if (row == col) continue;
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k < 9; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+
+        double[] m = new double[9];
+        for (int i = 0; i < 8; i++) {
+            m[i] = a[i][8] / a[i][i];
+        }
+        m[8] = 1;
+        return m;
+    }
+
+    private static int bilinear(int[] src, int w, int h, double x, double y) {
+        x = Math.max(0, Math.min(w - 1, x));
+        y = Math.max(0, Math.min(h - 1, y));
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(w - 1, x0 + 1);
+        int y1 = Math.min(h - 1, y0 + 1);
+        // Pesos en punto fijo de 8 bits
+        int fx = (int) ((x - x0) * 256);
+        int fy = (int) ((y - y0) * 256);
+
+        int p00 = src[y0 * w + x0], p10 = src[y0 * w + x1];
+        int p01 = src[y1 * w + x0], p11 = src[y1 * w + x1];
+        int result = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int top = ((p00 >> shift) & 0xFF) * (256 - fx) + ((p10 >> shift) & 0xFF) * fx;
+            int bottom = ((p01 >> shift) & 0xFF) * (256 - fx) + ((p11 >> shift) & 0xFF) * fx;
+            result |= ((top * (256 - fy) + bottom * fy + 32768) >> 16) << shift;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Kernel fusionado de contraste + enfoque (sharpen 3x3) sobre el int[] de un TYPE_INT_RGB.
+ * Reemplaza el RescaleOp + ConvolveOp del pipeline: un solo recorrido, sin imágenes intermedias.
+ */
+final class FusedEnhancementKernel {
+
+    private FusedEnhancementKernel() {
+    }
+
+    /**
+     * Construye la tabla de contraste equivalente a RescaleOp(scale, offset) por canal.
+     */
+    static int[] contrastLut(float scale, float offset) {
+        return ToneCurve.linear(scale, offset).table();
+    }
+
+    /**
+     * Aplica contraste y enfoque in-place sobre la imagen (debe ser TYPE_INT_RGB).
+     * Mantiene una ventana deslizante de 3 filas ya contrastadas, por lo que
+     * cada fila se puede sobrescribir en cuanto se calcula.
+     */
+    static void apply(BufferedImage image, int[] contrastLut) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Se esperaba TYPE_INT_RGB, recibido: " + image.getType());
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        apply(pixels, image.getWidth(), image.getHeight(), contrastLut);
+    }
+
+    static void apply(int[] pixels, int width, int height, int[] lut) {
+        applyBand(pixels, width, height, 0, height, null, null, lut);
+    }
+
+    /**
+     * Solo la tabla de contraste, in-place, para los planes que omiten el enfoque.
+     */
+    static void applyContrast(BufferedImage image, int[] contrastLut) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Se esperaba TYPE_INT_RGB, recibido: " + image.getType());
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        contrastRow(pixels, 0, pixels.length, contrastLut, pixels);
+    }
+
+    /**
+     * Versión por bandas de filas sobre un ForkJoinPool. Cada banda recibe una copia
+     * de las filas vecinas (halo) tomada antes de empezar, así ninguna banda lee
+     * filas que otra ya sobrescribió y el resultado es idéntico bit a bit al serial.
+     */
+    static void applyTiled(BufferedImage image, int[] contrastLut, ForkJoinPool pool, int minBandRows) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Se esperaba TYPE_INT_RGB, recibido: " + image.getType());
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        applyTiled(pixels, image.getWidth(), image.getHeight(), contrastLut, pool, minBandRows);
+    }
+
+    static void applyTiled(int[] pixels, int width, int height, int[] lut, ForkJoinPool pool, int minBandRows) {
+        int bands = Math.min(pool.getParallelism(), height / Math.max(1, minBandRows));
+        if (bands <= 1) {
+            apply(pixels, width, height, lut);
+            return;
+        }
+
+        List<BandTask> tasks = new ArrayList<>(bands);
+        int baseRows = height / bands;
+        int extraRows = height % bands;
+        int y0 = 0;
+        for (int i = 0; i < bands; i++) {
+            int y1 = y0 + baseRows + (i < extraRows ? 1 : 0);
+            // Halo: filas originales justo fuera de la banda (arriba y abajo)
+            int[] haloAbove = y0 > 0 ? copyRow(pixels, y0 - 1, width) : null;
+            int[] haloBelow = y1 < height ? copyRow(pixels, y1, width) : null;
+            tasks.add(new BandTask(pixels, width, height, y0, y1, haloAbove, haloBelow, lut));
+            y0 = y1;
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    private static int[] copyRow(int[] pixels, int row, int width) {
+        int[] copy = new int[width];
+        System.arraycopy(pixels, row * width, copy, 0, width);
+        return copy;
+    }
+
+    /**
+     * Procesa las filas [y0, y1). Las filas y0-1 e y1 se leen del halo si se entregan.
+     */
+    static void applyBand(int[] pixels, int width, int height, int y0, int y1,
+                          int[] haloAbove, int[] haloBelow, int[] lut) {
+        if (width == 0 || y0 >= y1) return;
+
+        int[] prev = new int[width];
+        int[] cur = new int[width];
+        int[] next = new int[width];
+
+        if (y0 > 0) contrastRow(rowSource(pixels, y0 - 1, y0, y1, haloAbove, haloBelow), rowOffset(y0 - 1, y0, y1, width), width, lut, prev);
+        contrastRow(pixels, y0 * width, width, lut, cur);
+        if (y0 + 1 < height) contrastRow(rowSource(pixels, y0 + 1, y0, y1, haloAbove, haloBelow), rowOffset(y0 + 1, y0, y1, width), width, lut, next);
+
+        for (int y = y0; y < y1; y++) {
+            int rowOffset = y * width;
+
+            if (y == 0 || y == height - 1 || width < 3) {
+                // Bordes: igual que ConvolveOp.EDGE_NO_OP, solo se copia el valor contrastado
+                System.arraycopy(cur, 0, pixels, rowOffset, width);
+            } else {
+                sharpenRow(prev, cur, next, pixels, rowOffset, width);
+            }
+
+            // Rotar la ventana: la fila y+2 se lee antes de que nadie la sobrescriba
+            int[] recycled = prev;
+            prev = cur;
+            cur = next;
+            next = recycled;
+            int ahead = y + 2;
+            if (ahead < height && ahead <= y1) {
+                contrastRow(rowSource(pixels, ahead, y0, y1, haloAbove, haloBelow), rowOffset(ahead, y0, y1, width), width, lut, next);
+            }
+        }
+    }
+
+    private static int[] rowSource(int[] pixels, int row, int y0, int y1, int[] haloAbove, int[] haloBelow) {
+        if (row == y0 - 1 && haloAbove != null) return haloAbove;
+        if (row == y1 && haloBelow != null) return haloBelow;
+        return pixels;
+    }
+
+    private static int rowOffset(int row, int y0, int y1, int width) {
+        return (row == y0 - 1 || row == y1) ? 0 : row * width;
+    }
+
+    private static void contrastRow(int[] pixels, int offset, int width, int[] lut, int[] out) {
+        for (int x = 0; x < width; x++) {
+            int rgb = pixels[offset + x];
+            out[x] = (lut[(rgb >> 16) & 0xFF] << 16) | (lut[(rgb >> 8) & 0xFF] << 8) | lut[rgb & 0xFF];
+        }
+    }
+
+    /**
+     * Kernel [0,-1,0; -1,5,-1; 0,-1,0] en aritmética entera, canal por canal.
+     */
+    private static void sharpenRow(int[] up, int[] mid, int[] down, int[] dst, int offset, int width) {
+        dst[offset] = mid[0];
+        for (int x = 1; x < width - 1; x++) {
+            int c = mid[x];
+            int n = up[x];
+            int s = down[x];
+            int w = mid[x - 1];
+            int e = mid[x + 1];
+
+            int r = 5 * ((c >> 16) & 0xFF) - ((n >> 16) & 0xFF) - ((s >> 16) & 0xFF) - ((w >> 16) & 0xFF) - ((e >> 16) & 0xFF);
+            int g = 5 * ((c >> 8) & 0xFF) - ((n >> 8) & 0xFF) - ((s >> 8) & 0xFF) - ((w >> 8) & 0xFF) - ((e >> 8) & 0xFF);
+            int b = 5 * (c & 0xFF) - (n & 0xFF) - (s & 0xFF) - (w & 0xFF) - (e & 0xFF);
+
+            dst[offset + x] = (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+        }
+        dst[offset + width - 1] = mid[width - 1];
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private static final class BandTask extends RecursiveAction {
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        private final int y0;
+        private final int y1;
+        private final int[] haloAbove;
+        private final int[] haloBelow;
+        private final int[] lut;
+
+        BandTask(int[] pixels, int width, int height, int y0, int y1, int[] haloAbove, int[] haloBelow, int[] lut) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.haloAbove = haloAbove;
+            this.haloBelow = haloBelow;
+            this.lut = lut;
+        }
+
+        @Override
+        protected void compute() {
+            applyBand(pixels, width, height, y0, y1, haloAbove, haloBelow, lut);
+        }
+    }
+}
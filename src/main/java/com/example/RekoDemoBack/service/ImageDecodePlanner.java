@@ -0,0 +1,124 @@
+package com.example.RekoDemoBack.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Decodificación planificada: lee primero la cabecera (ancho/alto) y solo después decide
+ * cuántos píxeles decodificar, vía ImageReadParam (submuestreo y/o región de origen).
+ * Evita decodificar una foto de 4000px completa cuando el consumidor solo necesita 1600px
+ * o un recorte.
+ */
+final class ImageDecodePlanner {
+
+    private ImageDecodePlanner() {
+    }
+
+    /**
+     * Plan de lectura resultante de la cabecera.
+     *
+     * @param subsampling factor entero de submuestreo (1 = sin submuestreo)
+     * @param region      rectángulo de origen a decodificar (null = imagen completa)
+     */
+    record DecodePlan(int sourceWidth, int sourceHeight, int subsampling, Rectangle region) {
+    }
+
+    /**
+     * Decodifica submuestreando lo máximo posible sin bajar de {@code minWidth}:
+     * el ancho decodificado queda en [minWidth, 2*minWidth) y el reescalado fino lo hace el llamador.
+     * Devuelve null si no hay lector para el formato (igual que ImageIO.read).
+     */
+    static BufferedImage decodeForWidth(InputStream in, int minWidth) throws IOException {
+        return decodeForWidth(in, minWidth, null);
+    }
+
+    /**
+     * Igual que {@link #decodeForWidth(InputStream, int)} pero decodificando sobre un raster del pool
+     * (si el tipo nativo del lector es reutilizable). El llamador devuelve la imagen al pool al terminar.
+     */
+    static BufferedImage decodeForWidth(InputStream in, int minWidth, RasterPool pool) throws IOException {
+        return decode(in, size -> new DecodePlan(size.width, size.height,
+                subsamplingFor(size.width, minWidth), null), pool);
+    }
+
+    /**
+     * Decodifica solo la región que devuelve {@code regionFor} a partir de las dimensiones de la cabecera.
+     * La región se recorta a los límites de la imagen.
+     */
+    static BufferedImage decodeRegion(InputStream in, Function<Dimension, Rectangle> regionFor) throws IOException {
+        return decodeRegion(in, regionFor, null);
+    }
+
+    static BufferedImage decodeRegion(InputStream in, Function<Dimension, Rectangle> regionFor,
+                                      RasterPool pool) throws IOException {
+        return decode(in, size -> new DecodePlan(size.width, size.height, 1, regionFor.apply(size)), pool);
+    }
+
+    /**
+     * Mayor factor entero que mantiene el ancho submuestreado (ceil(width / factor)) en al menos minWidth.
+     */
+    static int subsamplingFor(int sourceWidth, int minWidth) {
+        if (minWidth <= 0 || sourceWidth <= minWidth) return 1;
+        return Math.max(1, sourceWidth / minWidth);
+    }
+
+    static BufferedImage decode(InputStream in, Function<Dimension, DecodePlan> planner) throws IOException {
+        return decode(in, planner, null);
+    }
+
+    static BufferedImage decode(InputStream in, Function<Dimension, DecodePlan> planner,
+                                RasterPool pool) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            if (iis == null) return null;
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                // Solo avance y sin metadatos: la cabecera basta para planificar
+                reader.setInput(iis, true, true);
+                DecodePlan plan = planner.apply(new Dimension(reader.getWidth(0), reader.getHeight(0)));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (plan.subsampling() > 1) {
+                    param.setSourceSubsampling(plan.subsampling(), plan.subsampling(), 0, 0);
+                }
+                Rectangle region = new Rectangle(0, 0, plan.sourceWidth(), plan.sourceHeight());
+                if (plan.region() != null) {
+                    region = plan.region().intersection(region);
+                    if (region.isEmpty()) {
+                        throw new IOException("Región de decodificación vacía: " + plan.region());
+                    }
+                    param.setSourceRegion(region);
+                }
+                if (pool != null) {
+                    // El lector escribe todo el destino, así que un raster reutilizado (sucio) sirve igual
+                    ImageTypeSpecifier nativeType = firstImageType(reader);
+                    if (nativeType != null && nativeType.getBufferedImageType() != BufferedImage.TYPE_CUSTOM) {
+                        int s = plan.subsampling();
+                        param.setDestination(pool.leaseImage((region.width + s - 1) / s,
+                                (region.height + s - 1) / s, nativeType.getBufferedImageType()));
+                    }
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageTypeSpecifier firstImageType(ImageReader reader) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        return types.hasNext() ? types.next() : null;
+    }
+}
@@ -2,32 +2,31 @@ package com.example.RekoDemoBack.service;
 
 
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import org.springframework.web.multipart.MultipartFile;
 
 
 
-import javax.imageio.ImageIO;
 
 import java.awt.*;
 
 import java.awt.image.BufferedImage;
 
-import java.awt.image.ConvolveOp;
 
-import java.awt.image.Kernel;
-import java.awt.image.RescaleOp;
+import javax.imageio.ImageIO;
 
 import java.io.ByteArrayInputStream;
 
 import java.io.ByteArrayOutputStream;
 
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.MessageDigest;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
@@ -35,51 +34,234 @@ import java.util.Map;
 
 public class ImagePreprocessingService {
 
-    // Caché de imágenes preprocesadas (hash MD5 -> imagen procesada)
-    private final Map<String, CachedImage> imageCache = new ConcurrentHashMap<>();
-    private static final int MAX_CACHE_SIZE = 100;
-    private static final long CACHE_TTL_MS = 5 * 60 * 1000; // 5 minutos
+    // Caché de imágenes preprocesadas (SHA-256 del original -> imagen procesada), acotada por bytes con W-TinyLFU
+    private final WTinyLfuCache<String, CachedImage> imageCache;
+    private final long cacheTtlMs;
+
+    // Tamaño típico de un JPEG preprocesado, solo para dimensionar el sketch de frecuencias
+    private static final int TYPICAL_CACHED_IMAGE_BYTES = 256 * 1024;
+    // Overhead aproximado por entrada (nodo, strings, cabeceras) sumado al peso del payload
+    private static final int CACHE_ENTRY_OVERHEAD_BYTES = 256;
+
+    // Ancho de trabajo del pipeline (super-resolución reducida de 2500px a 1600px)
+    private static final int TARGET_WIDTH = 1600;
+
+    // Plan adaptativo: mide la imagen y omite las etapas que no necesita (false = pipeline fijo)
+    @Value("${app.preprocessing.adaptive:true}")
+    private boolean adaptiveEnabled;
+
+    // Limpieza de ruido por mediana (antes reduceNoise, deshabilitado por costoso); ahora es O(1) por píxel
+    @Value("${app.preprocessing.denoise.enabled:true}")
+    private boolean denoiseEnabled;
+
+    // Localiza el carnet a baja resolución y recorta (con corrección de perspectiva) antes de las mejoras
+    @Value("${app.preprocessing.document-crop.enabled:true}")
+    private boolean documentCropEnabled;
+
+    @Value("${app.preprocessing.document-crop.locate-width:400}")
+    private int documentLocateWidth;
+
+    // Versión en gris de 8 bits para el OCR (jpeg o png); el color se conserva para la foto
+    @Value("${app.preprocessing.ocr-rendition.enabled:true}")
+    private boolean ocrRenditionEnabled;
+
+    @Value("${app.preprocessing.ocr-rendition.format:jpeg}")
+    private String ocrRenditionFormat;
+
+    // Reverso: solo la franja MRZ va al OCR (si no se localiza, la imagen entera)
+    @Value("${app.preprocessing.mrz-band.enabled:true}")
+    private boolean mrzBandEnabled;
+
+    @Value("${app.preprocessing.mrz-band.locate-width:400}")
+    private int mrzLocateWidth;
+
+    // Contadores agregados de los planes elegidos, expuestos en /api/health
+    private final AtomicLong plannedImages = new AtomicLong();
+    private final AtomicLong resampleSkipped = new AtomicLong();
+    private final AtomicLong contrastSkipped = new AtomicLong();
+    private final AtomicLong sharpenSkipped = new AtomicLong();
+
+    // Motor de mejoras (Java2D u OpenCV según app.preprocessing.engine)
+    private final PreprocessingEngine engine;
+
+    // Tier off-heap opcional para los payloads cacheados (null = todo en heap)
+    private final OffHeapSlabStore offHeapStore;
+
+    private final UploadIngestionService uploadIngestionService;
+
+    private final JpegEncoderService jpegEncoder;
+
+    private final RasterPool rasterPool;
+
+    public ImagePreprocessingService(PreprocessingEngine engine,
+                                     UploadIngestionService uploadIngestionService,
+                                     JpegEncoderService jpegEncoder,
+                                     RasterPool rasterPool,
+                                     @Value("${app.preprocessing.cache.max-bytes:67108864}") long cacheMaxBytes,
+                                     @Value("${app.preprocessing.cache.ttl-seconds:300}") long cacheTtlSeconds,
+                                     @Value("${app.preprocessing.cache.off-heap.enabled:false}") boolean offHeapEnabled,
+                                     @Value("${app.preprocessing.cache.off-heap.slab-mb:8}") int offHeapSlabMb,
+                                     @Value("${app.preprocessing.cache.off-heap.page-kb:64}") int offHeapPageKb,
+                                     @Value("${app.preprocessing.cache.off-heap.max-slabs:16}") int offHeapMaxSlabs,
+                                     @Value("${app.preprocessing.cache.off-heap.mapped-file-dir:}") String offHeapMappedDir) {
+        this.engine = engine;
+        this.uploadIngestionService = uploadIngestionService;
+        this.jpegEncoder = jpegEncoder;
+        this.rasterPool = rasterPool;
+        this.cacheTtlMs = cacheTtlSeconds * 1000;
+        int expectedEntries = (int) Math.max(16, cacheMaxBytes / TYPICAL_CACHED_IMAGE_BYTES);
+        // Al salir de la caché (desalojo, expiración, reemplazo) la entrada devuelve sus páginas off-heap
+        this.imageCache = new WTinyLfuCache<>(cacheMaxBytes, expectedEntries, 1000, (hash, entry) -> entry.release());
+
+        if (offHeapEnabled) {
+            Path mappedDir = offHeapMappedDir.isBlank() ? null : Path.of(offHeapMappedDir);
+            this.offHeapStore = new OffHeapSlabStore(offHeapSlabMb * 1024 * 1024, offHeapPageKb * 1024,
+                    offHeapMaxSlabs, mappedDir);
+            System.out.println("✅ Caché de imágenes con tier off-heap ("
+                    + (mappedDir != null ? "archivo mapeado en " + mappedDir : "memoria directa") + ")");
+        } else {
+            this.offHeapStore = null;
+        }
+    }
+
+    /**
+     * Imagen preprocesada en color, su versión para OCR y el plan aplicado.
+     * Si la versión OCR está deshabilitada, ocrImage es la misma imagen en color;
+     * si se devolvió la original por error, ambas son la original y el plan es null.
+     */
+    public record PreprocessingResult(MultipartFile image, MultipartFile ocrImage, PreprocessingPlan plan) {
+
+        /**
+         * Devuelve los payloads off-heap que retiene un resultado servido desde la caché (sin efecto en el resto).
+         * Llamar cuando la petición ya no va a leer las imágenes.
+         */
+        public void release() {
+            releaseLease(image);
+            if (ocrImage != image) {
+                releaseLease(ocrImage);
+            }
+        }
+    }
+
+    public record PlanStats(long planned, long resampleSkipped, long contrastSkipped, long sharpenSkipped) {
+    }
 
     private static class CachedImage {
+        CachedBlob color;
+        // null si la versión OCR está deshabilitada
+        CachedBlob ocr;
+        PreprocessingPlan plan;
+
+        CachedImage(CachedBlob color, CachedBlob ocr, PreprocessingPlan plan) {
+            this.color = color;
+            this.ocr = ocr;
+            this.plan = plan;
+        }
+
+        long weight() {
+            return color.length() + (ocr != null ? ocr.length() : 0) + CACHE_ENTRY_OVERHEAD_BYTES;
+        }
+
+        /**
+         * Resultado que retiene los payloads off-heap hasta {@link PreprocessingResult#release()};
+         * null si la entrada se desalojó (y liberó sus páginas) entre el get y este punto.
+         */
+        PreprocessingResult lease() {
+            MultipartFile image = color.lease();
+            if (image == null) {
+                return null;
+            }
+            MultipartFile ocrImage = image;
+            if (ocr != null) {
+                ocrImage = ocr.lease();
+                if (ocrImage == null) {
+                    releaseLease(image);
+                    return null;
+                }
+            }
+            return new PreprocessingResult(image, ocrImage, plan);
+        }
+
+        void release() {
+            color.release();
+            if (ocr != null) {
+                ocr.release();
+            }
+        }
+    }
+
+    private static class CachedBlob {
+        // Exactamente uno de los dos está presente: bytes en heap o payload off-heap
         byte[] data;
+        OffHeapSlabStore.Payload offHeap;
         String filename;
         String contentType;
-        long timestamp;
 
-        CachedImage(byte[] data, String filename, String contentType) {
+        CachedBlob(byte[] data, OffHeapSlabStore.Payload offHeap, String filename, String contentType) {
             this.data = data;
+            this.offHeap = offHeap;
             this.filename = filename;
             this.contentType = contentType;
-            this.timestamp = System.currentTimeMillis();
         }
 
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL_MS;
+        long length() {
+            return offHeap != null ? offHeap.length() : data.length;
+        }
+
+        MultipartFile lease() {
+            if (offHeap == null) {
+                return new CustomMultipartFile(data, filename, contentType);
+            }
+            return offHeap.retain() ? new CustomMultipartFile(offHeap, filename, contentType) : null;
+        }
+
+        // Referencia de la propia caché
+        void release() {
+            if (offHeap != null) {
+                offHeap.release();
+            }
         }
     }
 
+    private static void releaseLease(MultipartFile file) {
+        if (file instanceof CustomMultipartFile custom) {
+            custom.release();
+        }
+    }
 
+    public WTinyLfuCache.Stats getCacheStats() {
+        return imageCache.stats();
+    }
+
+    public long getOffHeapUsedBytes() {
+        return offHeapStore != null ? offHeapStore.usedBytes() : 0;
+    }
+
+    public PlanStats getPlanStats() {
+        return new PlanStats(plannedImages.get(), resampleSkipped.get(), contrastSkipped.get(), sharpenSkipped.get());
+    }
+
+    public String getEngineName() {
+        return engine.name();
+    }
 
     public MultipartFile preprocessImage(MultipartFile originalImage) throws IOException {
+        return preprocessImageWithPlan(originalImage).image();
+    }
+
+    public PreprocessingResult preprocessImageWithPlan(MultipartFile originalImage) throws IOException {
 
         try {
-            // Calcular hash MD5 de la imagen original
-            String imageHash = calculateMD5(originalImage.getBytes());
+            // Lectura única del upload: el hash sale del mismo recorrido que llena el buffer compartido
+            IngestedUpload upload = uploadIngestionService.ingest(originalImage);
+            String imageHash = upload.sha256Hex();
 
             // Verificar caché
             CachedImage cached = imageCache.get(imageHash);
-            if (cached != null && !cached.isExpired()) {
+            PreprocessingResult hit = cached != null ? cached.lease() : null;
+            if (hit != null) {
                 System.out.println("✅ Imagen encontrada en caché (hash: " + imageHash.substring(0, 8) + "...)");
-                return new CustomMultipartFile(
-                        cached.data,
-                        cached.filename,
-                        cached.contentType
-                );
-            }
-
-            // Limpiar caché si está llena
-            if (imageCache.size() >= MAX_CACHE_SIZE) {
-                cleanExpiredCache();
+                return hit;
             }
 
             System.out.println("🖼️ Preprocesando imagen: " + originalImage.getOriginalFilename());
@@ -88,7 +270,8 @@ public class ImagePreprocessingService {
 
 
 
-            BufferedImage image = ImageIO.read(originalImage.getInputStream());
+            // Se lee la cabecera primero: fotos de 4000px se decodifican submuestreadas, nunca por debajo de 1600px
+            BufferedImage image = ImageDecodePlanner.decodeForWidth(upload.getInputStream(), TARGET_WIDTH, rasterPool);
 
 
 
@@ -96,48 +279,74 @@ public class ImagePreprocessingService {
 
                 System.err.println("❌ No se pudo leer la imagen original");
 
-                return originalImage;
+                return new PreprocessingResult(originalImage, originalImage, null);
 
             }
 
 
 
-            System.out.println("📐 Dimensiones originales: " + image.getWidth() + "x" + image.getHeight());
+            System.out.println("📐 Dimensiones decodificadas: " + image.getWidth() + "x" + image.getHeight());
+
+            image = cropToDocument(image);
 
 
 
 // Aplicar pipeline de mejoras
 
-            BufferedImage enhanced = applyEnhancementPipeline(image);
+            PreprocessingPlan plan = adaptiveEnabled
+                    ? PreprocessingPlanner.plan(image, TARGET_WIDTH, denoiseEnabled)
+                    : PreprocessingPlan.full(image.getWidth(), TARGET_WIDTH, denoiseEnabled);
+            recordPlan(plan);
+
+            BufferedImage enhanced = engine.enhance(image, plan);
 
 
 
 // Convertir de vuelta a MultipartFile
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] bytes = jpegEncoder.encode(enhanced, JpegEncoderService.Profile.OCR);
 
-            ImageIO.write(enhanced, "jpg", baos);
 
-            byte[] bytes = baos.toByteArray();
 
+            System.out.println("✅ Imagen preprocesada - Nuevo tamaño: " + bytes.length + " bytes");
 
+            // Versión OCR: gris de 8 bits con contraste estirado
+            byte[] ocrBytes = ocrRenditionEnabled ? encodeOcrRendition(enhanced) : null;
 
-            System.out.println("✅ Imagen preprocesada - Nuevo tamaño: " + bytes.length + " bytes");
+            // Ya codificadas ambas versiones: los rasters vuelven al pool para la siguiente petición
+            rasterPool.release(enhanced);
+            if (image != enhanced) {
+                rasterPool.release(image);
+            }
+            if (ocrBytes != null) {
+                System.out.println("🔤 Versión OCR en gris: " + ocrBytes.length + " bytes ("
+                        + (100 * ocrBytes.length / Math.max(1, bytes.length)) + "% del color)");
+            }
 
             // Guardar en caché
             String processedFilename = "processed_" + originalImage.getOriginalFilename();
-            imageCache.put(imageHash, new CachedImage(bytes, processedFilename, originalImage.getContentType()));
-            System.out.println("💾 Imagen guardada en caché (total: " + imageCache.size() + " imágenes)");
+            CachedImage entry = new CachedImage(
+                    toCacheBlob(bytes, processedFilename, "image/jpeg"),
+                    ocrBytes != null ? toCacheBlob(ocrBytes, "ocr_" + originalImage.getOriginalFilename(), ocrContentType()) : null,
+                    plan);
+            imageCache.put(imageHash, entry, entry.weight(), cacheTtlMs);
+            WTinyLfuCache.Stats stats = imageCache.stats();
+            System.out.println("💾 Imagen ofrecida a la caché (total: " + stats.entries() + " imágenes, "
+                    + stats.weightedBytes() / 1024 + " KB)");
 
-            return new CustomMultipartFile(
+            MultipartFile processed = new CustomMultipartFile(
 
                     bytes,
 
                     processedFilename,
 
-                    originalImage.getContentType()
+                    "image/jpeg"
 
             );
+            MultipartFile ocrImage = ocrBytes != null
+                    ? new CustomMultipartFile(ocrBytes, "ocr_" + originalImage.getOriginalFilename(), ocrContentType())
+                    : processed;
+            return new PreprocessingResult(processed, ocrImage, plan);
 
 
 
@@ -147,348 +356,190 @@ public class ImagePreprocessingService {
 
 // Si falla el preprocesamiento, devolver la imagen original
 
-            return originalImage;
+            return new PreprocessingResult(originalImage, originalImage, null);
 
         }
 
     }
 
-    private BufferedImage applyEnhancementPipeline(BufferedImage image) {
-        BufferedImage result = image;
-
-        // 1. Super-Resolución OPTIMIZADA (reducida de 2500px a 1600px)
-        result = upscaleImage(result, 1600);
-
-        // 2. Limpieza de ruido (DESHABILITADA para mejorar rendimiento)
-        // Este filtro es muy costoso (3 bucles anidados sobre millones de píxeles)
-        // result = reduceNoise(result);
-
-        // 3. Contraste de bordes (Para el OCR)
-        result = enhanceContrast(result);
-
-        // NOTA: adjustBrightness deshabilitado para no quemar el rostro
-        // result = adjustBrightness(result);
-
-        // 4. Enfoque
-        result = applySharpening(result);
-
-        return result;
+    /**
+     * Versión OCR de un upload sin pasar por el pipeline de mejoras (para los flujos que mandan
+     * la imagen original al OCR). Si algo falla devuelve el upload tal cual.
+     */
+    public MultipartFile toOcrRendition(MultipartFile originalImage) {
+        if (!ocrRenditionEnabled) {
+            return originalImage;
+        }
+        try {
+            IngestedUpload upload = uploadIngestionService.ingest(originalImage);
+            BufferedImage image = ImageDecodePlanner.decodeForWidth(upload.getInputStream(), TARGET_WIDTH, rasterPool);
+            if (image == null) {
+                return originalImage;
+            }
+            image = cropToDocument(image);
+            byte[] ocrBytes = encodeOcrRendition(image);
+            rasterPool.release(image);
+            System.out.println("🔤 Versión OCR en gris: " + originalImage.getSize() + " -> " + ocrBytes.length + " bytes");
+            return new CustomMultipartFile(ocrBytes, "ocr_" + originalImage.getOriginalFilename(), ocrContentType());
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo generar la versión OCR, se usa la original: " + e.getMessage());
+            return originalImage;
+        }
     }
 
-    private BufferedImage upscaleImage(BufferedImage image, int targetWidth) {
-        double ratio = (double) targetWidth / image.getWidth();
-        int targetHeight = (int) (image.getHeight() * ratio);
-
-        BufferedImage upscaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = upscaled.createGraphics();
-
-        // Seteo de máxima calidad para evitar pixelación
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    /**
+     * Franja MRZ de la imagen OCR del reverso: se localiza sobre una decodificación submuestreada y solo
+     * la franja se decodifica a resolución completa y se recodifica. Si no hay franja convincente o algo
+     * falla, devuelve la misma imagen (el OCR lee el reverso completo).
+     */
+    public MultipartFile cropToMrzBand(MultipartFile ocrImage) {
+        if (!mrzBandEnabled) {
+            return ocrImage;
+        }
+        try {
+            IngestedUpload upload = uploadIngestionService.ingest(ocrImage);
+            BufferedImage preview = ImageDecodePlanner.decodeForWidth(upload.getInputStream(), mrzLocateWidth, rasterPool);
+            if (preview == null) {
+                return ocrImage;
+            }
+            Rectangle band;
+            int previewHeight = preview.getHeight();
+            try {
+                band = MrzBandLocator.locate(preview, mrzLocateWidth, rasterPool);
+            } finally {
+                rasterPool.release(preview);
+            }
+            if (band == null) {
+                System.out.println("🔡 Franja MRZ no localizada, el OCR recibe el reverso completo");
+                return ocrImage;
+            }
 
-        g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
-        g.dispose();
-        return upscaled;
+            // La franja se midió sobre la vista previa: se lleva al alto real y solo se decodifica esa región
+            BufferedImage strip = ImageDecodePlanner.decodeRegion(upload.getInputStream(), size -> {
+                int y0 = (int) Math.floor((double) band.y * size.height / previewHeight);
+                int y1 = (int) Math.ceil((double) (band.y + band.height) * size.height / previewHeight);
+                return new Rectangle(0, y0, size.width, y1 - y0);
+            }, rasterPool);
+            if (strip == null) {
+                return ocrImage;
+            }
+            byte[] bytes;
+            try {
+                bytes = encodeForOcr(strip);
+            } finally {
+                rasterPool.release(strip);
+            }
+            System.out.println("🔡 Franja MRZ: " + strip.getWidth() + "x" + strip.getHeight() + ", "
+                    + ocrImage.getSize() + " -> " + bytes.length + " bytes");
+            return new CustomMultipartFile(bytes, "mrz_" + ocrImage.getOriginalFilename(), ocrContentType());
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo recortar la franja MRZ, se usa el reverso completo: " + e.getMessage());
+            return ocrImage;
+        }
     }
 
-
-
-    private BufferedImage resizeIfNeeded(BufferedImage image, int maxWidth) {
-
-        if (image.getWidth() <= maxWidth) {
-
+    /**
+     * Recorta la foto al carnet detectado. Si no hay detección fiable devuelve la misma imagen;
+     * si recorta, la original vuelve al pool.
+     */
+    private BufferedImage cropToDocument(BufferedImage image) {
+        if (!documentCropEnabled) {
             return image;
-
         }
-
-
-
-        double ratio = (double) maxWidth / image.getWidth();
-
-        int newHeight = (int) (image.getHeight() * ratio);
-
-
-
-        BufferedImage resized = new BufferedImage(maxWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-
-        Graphics2D g = resized.createGraphics();
-
-
-
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-
-        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-
-
-        g.drawImage(image, 0, 0, maxWidth, newHeight, null);
-
-        g.dispose();
-
-
-
-        System.out.println("📐 Imagen redimensionada: " + maxWidth + "x" + newHeight);
-
-        return resized;
-
+        DocumentLocator.Quad quad = DocumentLocator.locate(image, documentLocateWidth, rasterPool);
+        if (quad == null) {
+            System.out.println("🔲 Carnet no localizado, se mantiene el encuadre original");
+            return image;
+        }
+        BufferedImage cropped = DocumentLocator.crop(image, quad, rasterPool);
+        rasterPool.release(image);
+        System.out.println("🔲 Carnet localizado y recortado: " + cropped.getWidth() + "x" + cropped.getHeight());
+        return cropped;
     }
 
-
-
-    private BufferedImage enhanceContrast(BufferedImage image) {
-        // Implementación optimizada usando RescaleOp (operación nativa más rápida)
-        // En lugar de iterar pixel por pixel, usamos operaciones vectorizadas
-
-        float scaleFactor = 1.2f; // Factor de contraste
-        float offset = -20f;       // Offset para ajustar brillo
-
-        RescaleOp rescaleOp = new RescaleOp(scaleFactor, offset, null);
-
-        BufferedImage contrasted = new BufferedImage(
-            image.getWidth(),
-            image.getHeight(),
-            BufferedImage.TYPE_INT_RGB
-        );
-
-        rescaleOp.filter(image, contrasted);
-
-        System.out.println("🎨 Contraste mejorado (optimizado con RescaleOp)");
-        return contrasted;
+    private byte[] encodeOcrRendition(BufferedImage image) throws IOException {
+        BufferedImage gray = OcrRendition.toStretchedGray(image, TARGET_WIDTH, rasterPool);
+        try {
+            return encodeForOcr(gray);
+        } finally {
+            rasterPool.release(gray);
+        }
     }
 
-
-
-    private BufferedImage adjustBrightness(BufferedImage image) {
-
-        BufferedImage brightened = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-
-
-        int brightnessAdjustment = 15; // Aumentar brillo
-
-
-
-        for (int y = 0; y < image.getHeight(); y++) {
-
-            for (int x = 0; x < image.getWidth(); x++) {
-
-                int rgb = image.getRGB(x, y);
-
-                int r = (rgb >> 16) & 0xFF;
-
-                int g = (rgb >> 8) & 0xFF;
-
-                int b = rgb & 0xFF;
-
-
-
-                r = clamp(r + brightnessAdjustment);
-
-                g = clamp(g + brightnessAdjustment);
-
-                b = clamp(b + brightnessAdjustment);
-
-
-
-                int newRGB = (r << 16) | (g << 8) | b;
-
-                brightened.setRGB(x, y, newRGB);
-
-            }
-
+    private byte[] encodeForOcr(BufferedImage image) throws IOException {
+        if ("png".equalsIgnoreCase(ocrRenditionFormat)) {
+            // PNG gris sin pérdidas: útil si el OCR sufre con artefactos JPEG en letra pequeña
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(image.getWidth() * image.getHeight() / 2);
+            ImageIO.write(image, "png", baos);
+            return baos.toByteArray();
         }
-
-
-
-        return brightened;
-
+        return jpegEncoder.encode(image, JpegEncoderService.Profile.OCR);
     }
 
-
-
-    private BufferedImage applySharpening(BufferedImage image) {
-
-// Kernel de sharpening
-
-        float[] sharpenMatrix = {
-
-                0, -1, 0,
-
-                -1, 5, -1,
-
-                0, -1, 0
-
-        };
-
-
-
-        Kernel kernel = new Kernel(3, 3, sharpenMatrix);
-
-        ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-
-        return op.filter(image, null);
-
+    private String ocrContentType() {
+        return "png".equalsIgnoreCase(ocrRenditionFormat) ? "image/png" : "image/jpeg";
     }
 
+    private void recordPlan(PreprocessingPlan plan) {
+        plannedImages.incrementAndGet();
+        if (!plan.resample()) resampleSkipped.incrementAndGet();
+        if (!plan.contrast()) contrastSkipped.incrementAndGet();
+        if (!plan.sharpen()) sharpenSkipped.incrementAndGet();
+        System.out.println("🧭 Plan de preprocesamiento: reescalar=" + plan.resample() + ", contraste=" + plan.contrast()
+                + ", enfoque=" + plan.sharpen() + ", mediana=" + plan.denoise() + " (rango " + plan.dynamicRange()
+                + ", nitidez " + Math.round(plan.blurScore()) + ")");
+    }
 
 
-    private BufferedImage reduceNoise(BufferedImage image) {
-
-// Filtro de mediana simple para reducir ruido
-
-        BufferedImage denoised = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-
-
-        int radius = 1;
-
-        for (int y = radius; y < image.getHeight() - radius; y++) {
-
-            for (int x = radius; x < image.getWidth() - radius; x++) {
-
-                int[] reds = new int[9];
-
-                int[] greens = new int[9];
-
-                int[] blues = new int[9];
-
-                int index = 0;
-
-
-
-                for (int dy = -radius; dy <= radius; dy++) {
-
-                    for (int dx = -radius; dx <= radius; dx++) {
-
-                        int rgb = image.getRGB(x + dx, y + dy);
-
-                        reds[index] = (rgb >> 16) & 0xFF;
-
-                        greens[index] = (rgb >> 8) & 0xFF;
-
-                        blues[index] = rgb & 0xFF;
-
-                        index++;
-
-                    }
-
-                }
-
-
-
-                int medianRed = getMedian(reds);
-
-                int medianGreen = getMedian(greens);
-
-                int medianBlue = getMedian(blues);
-
-
-
-                int newRGB = (medianRed << 16) | (medianGreen << 8) | medianBlue;
-
-                denoised.setRGB(x, y, newRGB);
 
+    private CachedBlob toCacheBlob(byte[] bytes, String filename, String contentType) {
+        if (offHeapStore != null) {
+            OffHeapSlabStore.Payload payload = offHeapStore.store(bytes);
+            if (payload != null) {
+                return new CachedBlob(null, payload, filename, contentType);
             }
-
+            System.out.println("⚠️ Slabs off-heap llenos, la entrada se cachea en heap");
         }
-
-
-
-        return denoised;
-
-    }
-
-
-
-    private int getBrightness(int rgb) {
-
-        int r = (rgb >> 16) & 0xFF;
-
-        int g = (rgb >> 8) & 0xFF;
-
-        int b = rgb & 0xFF;
-
-        return (r + g + b) / 3;
-
+        return new CachedBlob(bytes, null, filename, contentType);
     }
 
 
 
-    private int getMedian(int[] values) {
-
-// Ordenamiento simple para mediana
-
-        for (int i = 0; i < values.length - 1; i++) {
-
-            for (int j = i + 1; j < values.length; j++) {
-
-                if (values[i] > values[j]) {
+// Clase auxiliar para crear MultipartFile personalizado
 
-                    int temp = values[i];
+    private static class CustomMultipartFile implements MultipartFile {
 
-                    values[i] = values[j];
+        private final byte[] content;
 
-                    values[j] = temp;
+        // Si está presente, el contenido vive fuera del heap y se lee en streaming sin copiarlo
+        private final OffHeapSlabStore.Payload offHeapContent;
 
-                }
+        private final AtomicBoolean released = new AtomicBoolean();
 
-            }
+        private final String filename;
 
-        }
+        private final String contentType;
 
-        return values[values.length / 2];
 
-    }
 
+        public CustomMultipartFile(byte[] content, String filename, String contentType) {
 
+            this.content = content;
 
-    private int clamp(int value) {
+            this.offHeapContent = null;
 
-        return Math.max(0, Math.min(255, value));
+            this.filename = filename;
 
-    }
+            this.contentType = contentType;
 
-    private String calculateMD5(byte[] data) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hash = md.digest(data);
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            return String.valueOf(data.length); // Fallback
         }
-    }
-
-    private void cleanExpiredCache() {
-        imageCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-        System.out.println("🧹 Caché limpiada. Imágenes restantes: " + imageCache.size());
-    }
-
-
-
-// Clase auxiliar para crear MultipartFile personalizado
-
-    private static class CustomMultipartFile implements MultipartFile {
-
-        private final byte[] content;
-
-        private final String filename;
-
-        private final String contentType;
 
+        // Recibe una referencia ya retenida del payload y la devuelve en release()
+        public CustomMultipartFile(OffHeapSlabStore.Payload offHeapContent, String filename, String contentType) {
 
+            this.content = null;
 
-        public CustomMultipartFile(byte[] content, String filename, String contentType) {
-
-            this.content = content;
+            this.offHeapContent = offHeapContent;
 
             this.filename = filename;
 
@@ -518,19 +569,19 @@ public class ImagePreprocessingService {
 
         @Override
 
-        public boolean isEmpty() { return content.length == 0; }
+        public boolean isEmpty() { return getSize() == 0; }
 
 
 
         @Override
 
-        public long getSize() { return content.length; }
+        public long getSize() { return offHeapContent != null ? offHeapContent.length() : content.length; }
 
 
 
         @Override
 
-        public byte[] getBytes() { return content; }
+        public byte[] getBytes() { return offHeapContent != null ? offHeapContent.toByteArray() : content; }
 
 
 
@@ -538,7 +589,7 @@ public class ImagePreprocessingService {
 
         public java.io.InputStream getInputStream() {
 
-            return new ByteArrayInputStream(content);
+            return offHeapContent != null ? offHeapContent.openStream() : new ByteArrayInputStream(content);
 
         }
 
@@ -548,10 +599,28 @@ public class ImagePreprocessingService {
 
         public void transferTo(java.io.File dest) throws IOException, IllegalStateException {
 
+            if (offHeapContent != null) {
+
+                try (java.io.OutputStream out = java.nio.file.Files.newOutputStream(dest.toPath())) {
+
+                    offHeapContent.writeTo(out);
+
+                }
+
+                return;
+
+            }
+
             java.nio.file.Files.write(dest.toPath(), content);
 
         }
 
+        void release() {
+            if (offHeapContent != null && released.compareAndSet(false, true)) {
+                offHeapContent.release();
+            }
+        }
+
     }
 
 }
\ No newline at end of file
@@ -2,26 +2,100 @@ package com.example.RekoDemoBack.service;
 
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
-import java.awt.image.RescaleOp;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 
 @Service
 public class ImageProcessingService {
 
+    // Gamma 0.9 precalculada: antes se evaluaba Math.pow tres veces por píxel
+    private static final ToneCurve NATURAL_BALANCE = ToneCurve.gamma(0.9);
+
+    private final JpegEncoderService jpegEncoder;
+
+    // Los rasters de 500x630 (salida y suavizado) se repiten en cada petición
+    private final RasterPool rasterPool;
+
+    // Detector de rostro local; si no está disponible o no encuentra rostro se usan las proporciones fijas
+    private final LocalFaceDetector faceDetector;
+
+    private final PixelKernels kernels;
+
+    public ImageProcessingService(JpegEncoderService jpegEncoder, RasterPool rasterPool,
+                                  LocalFaceDetector faceDetector, PixelKernels kernels) {
+        this.jpegEncoder = jpegEncoder;
+        this.rasterPool = rasterPool;
+        this.faceDetector = faceDetector;
+        this.kernels = kernels;
+    }
+
     /**
      * Extrae la foto del titular con limpieza moderada.
      * Recibe la imagen ya corregida en perspectiva por el AdvancedService.
      */
     public byte[] extractPersonPhoto(BufferedImage documentImage) throws IOException {
-        int w = documentImage.getWidth();
-        int h = documentImage.getHeight();
+        // En el DNI la foto está en la mitad izquierda: el detector solo mira ahí
+        Rectangle search = faceSearchRegion(documentImage.getWidth(), documentImage.getHeight());
+        Rectangle photo = detectPortrait(documentImage.getSubimage(search.x, search.y, search.width, search.height));
+        if (photo != null) {
+            photo.translate(search.x, search.y);
+        } else {
+            photo = photoRegion(documentImage.getWidth(), documentImage.getHeight());
+        }
+        BufferedImage face = documentImage.getSubimage(photo.x, photo.y, photo.width, photo.height);
+
+        // 2. MEJORA NATURAL (Sin quemar la imagen)
+        return enhancePersonPhoto(face);
+    }
+
+    /**
+     * Mejora y codifica un rostro ya recortado (p. ej. decodificado directamente como región del JPEG).
+     */
+    public byte[] enhancePersonPhoto(BufferedImage face) throws IOException {
+        BufferedImage enhanced = enhanceFaceNaturally(face);
+        try {
+            return bufferedImageToByteArray(enhanced);
+        } finally {
+            rasterPool.release(enhanced);
+        }
+    }
+
+    public boolean isFaceDetectorAvailable() {
+        return faceDetector.isAvailable();
+    }
+
+    /**
+     * Encuadre carnet centrado en el rostro detectado dentro de {@code searchArea}, en sus coordenadas;
+     * null si el detector no está disponible o no encuentra rostro.
+     */
+    public Rectangle detectPortrait(BufferedImage searchArea) {
+        if (!faceDetector.isAvailable()) {
+            return null;
+        }
+        Rectangle portrait = faceDetector.portraitRegion(searchArea);
+        if (portrait == null) {
+            System.out.println("🙂 Rostro no detectado, se usan proporciones fijas");
+            return null;
+        }
+        System.out.println("🙂 Rostro detectado localmente: " + portrait.width + "x" + portrait.height
+                + " en (" + portrait.x + "," + portrait.y + ")");
+        return portrait;
+    }
 
+    /**
+     * Zona donde buscar el rostro dentro de un DNI de w x h: la mitad izquierda a toda altura.
+     */
+    static Rectangle faceSearchRegion(int w, int h) {
+        return new Rectangle(0, 0, Math.max(1, (int) (w * 0.5)), h);
+    }
+
+    /**
+     * Zona de la foto del titular dentro de un DNI de w x h. Solo depende de las dimensiones,
+     * así que se puede calcular desde la cabecera antes de decodificar.
+     */
+    static Rectangle photoRegion(int w, int h) {
         // 1. RECORTE DE PRECISIÓN (Centrado mejorado para DNI Peruano)
         // Usamos proporciones que dejan aire alrededor de la cara para el comparador
         int x = (int) (w * 0.045);     // Ajustado para centrar mejor
@@ -34,16 +108,13 @@ public class ImageProcessingService {
         pWidth = Math.min(pWidth, w - x);
         pHeight = Math.min(pHeight, h - y);
 
-        BufferedImage face = documentImage.getSubimage(x, y, pWidth, pHeight);
-
-        // 2. MEJORA NATURAL (Sin quemar la imagen)
-        return bufferedImageToByteArray(enhanceFaceNaturally(face));
+        return new Rectangle(x, y, pWidth, pHeight);
     }
 
     private BufferedImage enhanceFaceNaturally(BufferedImage face) {
         int tw = 500;
         int th = 630;
-        BufferedImage output = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+        BufferedImage output = rasterPool.leaseImage(tw, th, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = output.createGraphics();
 
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
@@ -61,75 +132,23 @@ public class ImageProcessingService {
     }
 
     private BufferedImage applyNaturalBalance(BufferedImage img) {
-        // Reducimos el ruido de la webcam primero
-        float[] matrix = {
-                1/16f, 1/8f, 1/16f,
-                1/8f, 1/4f, 1/8f,
-                1/16f, 1/8f, 1/16f
-        };
-        ConvolveOp op = new ConvolveOp(new Kernel(3, 3, matrix));
-        BufferedImage denoised = op.filter(img, null);
-
-        // Ajuste manual de niveles para evitar el "filtro blanco"
-        for (int y = 0; y < denoised.getHeight(); y++) {
-            for (int x = 0; x < denoised.getWidth(); x++) {
-                int rgb = denoised.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                // Aumentamos contraste sin subir el brillo base
-                r = (int)(Math.pow(r / 255.0, 0.9) * 255.0);
-                g = (int)(Math.pow(g / 255.0, 0.9) * 255.0);
-                b = (int)(Math.pow(b / 255.0, 0.9) * 255.0);
-
-                denoised.setRGB(x, y, (clamp(r) << 16) | (clamp(g) << 8) | clamp(b));
-            }
-        }
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] src = PixelKernels.rgbPixels(img);
+
+        // Reducimos el ruido de la webcam primero (gaussiano 1-2-1 en enteros)
+        BufferedImage denoised = rasterPool.leaseImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) denoised.getRaster().getDataBuffer()).getData();
+        kernels.convolve3x3(src, dst, w, h, PixelKernels.GAUSSIAN_3X3, PixelKernels.GAUSSIAN_3X3_SHIFT);
+        rasterPool.release(img);
+
+        // Ajuste manual de niveles para evitar el "filtro blanco":
+        // aumentamos contraste sin subir el brillo base (gamma 0.9 por tabla)
+        NATURAL_BALANCE.apply(dst, dst.length);
         return denoised;
     }
 
-    private int clamp(int val) { return Math.max(0, Math.min(255, val)); }
-
     public byte[] bufferedImageToByteArray(BufferedImage image) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        javax.imageio.ImageIO.write(image, "jpg", baos);
-        return baos.toByteArray();
-    }
-    private BufferedImage enhanceToCarnetStyle(BufferedImage face) {
-        // Dimensiones estándar para un carnet de alta calidad
-        int tw = 500;
-        int th = 650;
-        BufferedImage output = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = output.createGraphics();
-
-        // Calidad máxima de renderizado
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-        // Fondo blanco puro
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, tw, th);
-        g.drawImage(face, 0, 0, tw, th, null);
-        g.dispose();
-
-        // --- CORRECCIÓN DE COLOR EQUILIBRADA ---
-        // Factor 1.15f (contraste suave) | Offset 8f (brillo sutil, antes era 25f y por eso se veía blanco)
-        RescaleOp filter = new RescaleOp(1.15f, 8f, null);
-        output = filter.filter(output, null);
-
-        // Aplicamos un suavizado suave para reducir el pixelado de la webcam
-        return applySoftDenoise(output);
-    }
-
-    private BufferedImage applySoftDenoise(BufferedImage image) {
-        // Kernel de desenfoque Gaussiano muy leve (mezcla los píxeles pixelados)
-        float[] matrix = {
-                1/16f, 1/8f, 1/16f,
-                1/8f, 1/4f, 1/8f,
-                1/16f, 1/8f, 1/16f
-        };
-        ConvolveOp op = new ConvolveOp(new Kernel(3, 3, matrix));
-        return op.filter(image, null);
+        return jpegEncoder.encode(image, JpegEncoderService.Profile.FACE_CROP);
     }
-}
\ No newline at end of file
+}
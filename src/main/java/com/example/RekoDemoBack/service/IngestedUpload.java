@@ -0,0 +1,81 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Base64;
+
+/**
+ * Upload leído una sola vez. Guarda el contenido junto con su huella SHA-256
+ * y lo comparte en modo solo lectura con todas las etapas siguientes:
+ * streams, ByteBuffer y Base64 se sirven desde el mismo arreglo, sin copias.
+ */
+public class IngestedUpload implements MultipartFile {
+
+    private final byte[] content;
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final String sha256Hex;
+
+    IngestedUpload(byte[] content, String name, String originalFilename, String contentType,
+                   String sha256Hex) {
+        this.content = content;
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.sha256Hex = sha256Hex;
+    }
+
+    public String sha256Hex() {
+        return sha256Hex;
+    }
+
+    /**
+     * Vista de solo lectura del contenido compartido (no copia).
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(content).asReadOnlyBuffer();
+    }
+
+    public String toBase64() {
+        return Base64.getEncoder().encodeToString(content);
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public String getOriginalFilename() { return originalFilename; }
+
+    @Override
+    public String getContentType() { return contentType; }
+
+    @Override
+    public boolean isEmpty() { return content.length == 0; }
+
+    @Override
+    public long getSize() { return content.length; }
+
+    /**
+     * Devuelve una copia defensiva: el arreglo interno es compartido y no debe mutarse.
+     * Las etapas internas usan getInputStream(), asReadOnlyBuffer() o toBase64().
+     */
+    @Override
+    public byte[] getBytes() { return content.clone(); }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException, IllegalStateException {
+        Files.write(dest.toPath(), content);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Codificador JPEG compartido por todas las salidas de imagen.
+ * Un ImageWriter por hilo (sin búsqueda SPI por llamada), buffer de salida predimensionado
+ * con la relación bytes/píxel observada y calidad/submuestreo de croma explícitos por caso de uso.
+ */
+@Service
+public class JpegEncoderService {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    public enum Profile {
+        // Texto para OCR: la luminancia manda, el croma puede ir a 4:2:0
+        OCR(false),
+        // Rostro: croma completo (4:4:4) para no degradar tonos de piel en el comparador
+        FACE_CROP(true);
+
+        private final boolean fullChroma;
+
+        Profile(boolean fullChroma) {
+            this.fullChroma = fullChroma;
+        }
+    }
+
+    private final Map<Profile, Float> qualities = new EnumMap<>(Profile.class);
+
+    // Estimación aprendida (media móvil) de bytes por píxel, para dimensionar el buffer de salida
+    private final Map<Profile, Double> bytesPerPixel = new EnumMap<>(Profile.class);
+
+    private final ThreadLocal<ImageWriter> writers = ThreadLocal.withInitial(JpegEncoderService::newWriter);
+
+    public JpegEncoderService(@Value("${app.jpeg.quality.ocr:0.85}") float ocrQuality,
+                              @Value("${app.jpeg.quality.face-crop:0.90}") float faceCropQuality) {
+        qualities.put(Profile.OCR, ocrQuality);
+        qualities.put(Profile.FACE_CROP, faceCropQuality);
+        for (Profile profile : Profile.values()) {
+            bytesPerPixel.put(profile, 0.35);
+        }
+    }
+
+    public byte[] encode(BufferedImage image, Profile profile) throws IOException {
+        BufferedImage source = withoutAlpha(image);
+        long pixels = (long) source.getWidth() * source.getHeight();
+        int estimate = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(8192, pixels * estimatedBytesPerPixel(profile) * 1.1));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(estimate);
+        ImageWriter writer = writers.get();
+        // MemoryCacheImageOutputStream evita la caché en disco que usa ImageIO.createImageOutputStream por defecto
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(baos)) {
+            writer.setOutput(out);
+
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(qualities.get(profile));
+
+            IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(source), param);
+            if (profile.fullChroma) {
+                setFullChroma(metadata);
+            }
+
+            writer.write(null, new IIOImage(source, null, metadata), param);
+        } finally {
+            // Soltar la referencia al stream; el writer queda listo para la siguiente imagen del hilo
+            writer.reset();
+        }
+
+        byte[] bytes = baos.toByteArray();
+        if (pixels > 0) {
+            learn(profile, (double) bytes.length / pixels);
+        }
+        return bytes;
+    }
+
+    private double estimatedBytesPerPixel(Profile profile) {
+        synchronized (bytesPerPixel) {
+            return bytesPerPixel.get(profile);
+        }
+    }
+
+    private void learn(Profile profile, double observed) {
+        synchronized (bytesPerPixel) {
+            bytesPerPixel.put(profile, bytesPerPixel.get(profile) * 0.8 + observed * 0.2);
+        }
+    }
+
+    /**
+     * Fuerza factores de muestreo 1x1 en todas las componentes (4:4:4).
+     */
+    private static void setFullChroma(IIOMetadata metadata) throws IIOInvalidTreeException {
+        Node tree = metadata.getAsTree(JPEG_METADATA_FORMAT);
+        NodeList components = ((Element) tree).getElementsByTagName("componentSpec");
+        if (components.getLength() < 3) {
+            return; // Escala de grises: no hay croma
+        }
+        for (int i = 0; i < components.getLength(); i++) {
+            Element component = (Element) components.item(i);
+            component.setAttribute("HsamplingFactor", "1");
+            component.setAttribute("VsamplingFactor", "1");
+        }
+        metadata.setFromTree(JPEG_METADATA_FORMAT, tree);
+    }
+
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private static ImageWriter newWriter() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No hay ImageWriter JPEG disponible");
+        }
+        return writers.next();
+    }
+}
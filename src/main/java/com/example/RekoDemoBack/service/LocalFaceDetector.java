@@ -0,0 +1,213 @@
+package com.example.RekoDemoBack.service;
+
+import jakarta.annotation.PreDestroy;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detector de rostro local (cascada Haar de OpenCV, sin red) para centrar el recorte de la foto del DNI.
+ * Trabaja sobre una versión reducida en gris de la zona de búsqueda y devuelve un recorte con la
+ * proporción de la foto carnet (500x630) centrado en el rostro.
+ *
+ * La cascada se lee de app.face-detector.cascade-path o, si no, del classpath
+ * (opencv/haarcascade_frontalface_default.xml). Sin cascada o sin OpenCV nativo el detector queda
+ * deshabilitado y los llamadores usan las proporciones fijas.
+ */
+@Service
+public class LocalFaceDetector {
+
+    private static final String CLASSPATH_CASCADE = "opencv/haarcascade_frontalface_default.xml";
+
+    // Proporción de la foto de salida (ancho / alto) y encuadre alrededor del rostro detectado
+    private static final double PORTRAIT_ASPECT = 500.0 / 630.0;
+    private static final double CROP_HEIGHT_PER_FACE = 2.4;
+    private static final double HEADROOM_PER_FACE = 0.6;
+
+    private final boolean enabled;
+    private final int detectWidth;
+    private final String cascadeFile;
+
+    private final RasterPool rasterPool;
+
+    // CascadeClassifier no es thread-safe: cada detección toma una instancia libre (o crea otra) y la devuelve
+    private final ConcurrentLinkedDeque<CascadeClassifier> idleClassifiers = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    private final AtomicLong detected = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+
+    public record Stats(boolean available, long detected, long notFound) {
+    }
+
+    public LocalFaceDetector(@Value("${app.face-detector.enabled:true}") boolean enabled,
+                             @Value("${app.face-detector.cascade-path:}") String cascadePath,
+                             @Value("${app.face-detector.detect-width:320}") int detectWidth,
+                             RasterPool rasterPool) {
+        this.detectWidth = detectWidth;
+        this.rasterPool = rasterPool;
+        String file = null;
+        if (enabled) {
+            try {
+                OpenCvRuntime.ensureLoaded();
+                file = resolveCascade(cascadePath);
+                if (file == null) {
+                    System.out.println("⚠️ Detector de rostro local sin cascada Haar; se usan proporciones fijas");
+                } else if (new CascadeClassifier(file).empty()) {
+                    System.err.println("⚠️ Cascada Haar inválida: " + file + "; se usan proporciones fijas");
+                    file = null;
+                } else {
+                    System.out.println("✅ Detector de rostro local: " + file);
+                }
+            } catch (Exception | LinkageError e) {
+                System.err.println("⚠️ Detector de rostro local no disponible: " + e.getMessage());
+                file = null;
+            }
+        }
+        this.cascadeFile = file;
+        this.enabled = file != null;
+    }
+
+    public boolean isAvailable() {
+        return enabled;
+    }
+
+    /**
+     * Recorte tipo foto carnet centrado en el rostro más grande de {@code image}, en coordenadas de la imagen;
+     * null si el detector no está disponible o no encuentra ningún rostro.
+     */
+    public Rectangle portraitRegion(BufferedImage image) {
+        Rectangle face = detectLargestFace(image);
+        if (face == null) {
+            return null;
+        }
+        return portraitAround(face, image.getWidth(), image.getHeight());
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, detected.get(), notFound.get());
+    }
+
+    /**
+     * Suelta los clasificadores al parar. OpenCV 4.5 no expone release() en CascadeClassifier:
+     * sin referencias, su finalizer libera la memoria nativa.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        int released = idleClassifiers.size();
+        idleClassifiers.clear();
+        if (released > 0) {
+            System.out.println("🧹 Detector de rostro local: " + released + " clasificadores liberados");
+        }
+    }
+
+    private Rectangle detectLargestFace(BufferedImage image) {
+        if (!enabled) {
+            return null;
+        }
+        int w = Math.min(detectWidth, image.getWidth());
+        int h = Math.max(1, (int) Math.round(image.getHeight() * ((double) w / image.getWidth())));
+        double scale = (double) image.getWidth() / w;
+
+        // Nivel reducido en gris directamente sobre un TYPE_BYTE_GRAY (se copia una vez al Mat)
+        BufferedImage gray = rasterPool.leaseImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, w, h, null);
+        g.dispose();
+
+        Mat mat = new Mat(h, w, CvType.CV_8UC1);
+        Mat equalized = new Mat();
+        MatOfRect faces = new MatOfRect();
+        CascadeClassifier classifier = idleClassifiers.pollFirst();
+        if (classifier == null) {
+            classifier = new CascadeClassifier(cascadeFile);
+        }
+        try {
+            mat.put(0, 0, ((DataBufferByte) gray.getRaster().getDataBuffer()).getData());
+            rasterPool.release(gray);
+            Imgproc.equalizeHist(mat, equalized);
+            // Un rostro de DNI ocupa al menos ~1/5 del ancho de la zona de búsqueda
+            int minFace = Math.max(24, w / 5);
+            classifier.detectMultiScale(equalized, faces, 1.1, 4, 0,
+                    new Size(minFace, minFace), new Size());
+
+            org.opencv.core.Rect best = null;
+            for (org.opencv.core.Rect candidate : faces.toArray()) {
+                if (best == null || candidate.area() > best.area()) {
+                    best = candidate;
+                }
+            }
+            if (best == null) {
+                notFound.incrementAndGet();
+                return null;
+            }
+            detected.incrementAndGet();
+            return new Rectangle((int) (best.x * scale), (int) (best.y * scale),
+                    (int) (best.width * scale), (int) (best.height * scale));
+        } finally {
+            if (!closed) {
+                idleClassifiers.offerFirst(classifier);
+            }
+            mat.release();
+            equalized.release();
+            faces.release();
+        }
+    }
+
+    /**
+     * Encuadre carnet alrededor del rostro: alto proporcional al rostro, espacio sobre la frente,
+     * desplazado (no recortado) para quedar dentro de la imagen. Si no cabe se reduce en ambos ejes
+     * por el mismo factor, manteniendo la proporción carnet.
+     */
+    static Rectangle portraitAround(Rectangle face, int imageWidth, int imageHeight) {
+        double desiredHeight = Math.round(face.height * CROP_HEIGHT_PER_FACE);
+        double desiredWidth = Math.round(desiredHeight * PORTRAIT_ASPECT);
+        double scale = Math.min(1.0, Math.min(imageWidth / desiredWidth, imageHeight / desiredHeight));
+        int width = (int) Math.min(imageWidth, Math.round(desiredWidth * scale));
+        int height = (int) Math.min(imageHeight, Math.round(desiredHeight * scale));
+        int x = (int) Math.round(face.getCenterX() - width / 2.0);
+        int y = (int) Math.round(face.y - face.height * HEADROOM_PER_FACE);
+        x = Math.max(0, Math.min(x, imageWidth - width));
+        y = Math.max(0, Math.min(y, imageHeight - height));
+        return new Rectangle(x, y, width, height);
+    }
+
+    private static String resolveCascade(String cascadePath) throws IOException {
+        if (cascadePath != null && !cascadePath.isBlank()) {
+            Path path = Path.of(cascadePath);
+            if (!Files.isReadable(path)) {
+                System.err.println("⚠️ No se puede leer la cascada configurada: " + cascadePath);
+                return null;
+            }
+            return path.toAbsolutePath().toString();
+        }
+        // CascadeClassifier necesita una ruta de fichero: el recurso del classpath se copia a un temporal
+        try (InputStream in = LocalFaceDetector.class.getClassLoader().getResourceAsStream(CLASSPATH_CASCADE)) {
+            if (in == null) {
+                return null;
+            }
+            Path temp = Files.createTempFile("haarcascade_frontalface", ".xml");
+            temp.toFile().deleteOnExit();
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            return temp.toString();
+        }
+    }
+}
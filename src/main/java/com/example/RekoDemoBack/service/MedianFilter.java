@@ -0,0 +1,262 @@
+package com.example.RekoDemoBack.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Mediana por canal en tiempo constante por píxel (Perreault & Hébert, basado en Huang):
+ * histogramas por columna que se deslizan verticalmente y un histograma del kernel que se desliza
+ * horizontalmente. Cada histograma tiene nivel grueso (16 bins) y fino (256 bins); el fino del kernel
+ * solo se actualiza, de forma perezosa, en el bin grueso donde cae la mediana.
+ *
+ * Trabaja sobre el int[] 0xRRGGBB, lee de src y escribe en dst, con bordes replicados.
+ * La imagen se reparte en tiles independientes (cada uno con sus propios histogramas).
+ *
+ * Para radio 1 (3x3, el caso del pipeline) el coste fijo de los histogramas no compensa y se usa
+ * la mediana de 9 por columnas ordenadas: med(max(mínimos), med(medios), min(máximos)).
+ */
+final class MedianFilter {
+
+    private static final int COARSE = 16;
+    private static final int FINE = 256;
+
+    // Ancho de tile: acota la memoria de histogramas por tarea (~(256 + 2r) columnas x 3 canales)
+    static final int TILE_WIDTH = 256;
+
+    private MedianFilter() {
+    }
+
+    static void apply(int[] src, int[] dst, int width, int height, int radius) {
+        filterTile(src, dst, width, height, radius, 0, width, 0, height);
+    }
+
+    /**
+     * Versión por tiles sobre un ForkJoinPool. Los tiles solo leen src, así que no necesitan halo
+     * compartido y el resultado es idéntico al de {@link #apply}.
+     */
+    static void applyTiled(int[] src, int[] dst, int width, int height, int radius,
+                           ForkJoinPool pool, int minBandRows) {
+        int bands = Math.max(1, Math.min(pool.getParallelism(), height / Math.max(1, minBandRows)));
+        int bandRows = (height + bands - 1) / bands;
+
+        List<RecursiveAction> tiles = new ArrayList<>();
+        for (int y0 = 0; y0 < height; y0 += bandRows) {
+            for (int x0 = 0; x0 < width; x0 += TILE_WIDTH) {
+                int tx0 = x0, ty0 = y0;
+                int tx1 = Math.min(width, x0 + TILE_WIDTH);
+                int ty1 = Math.min(height, y0 + bandRows);
+                tiles.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        filterTile(src, dst, width, height, radius, tx0, tx1, ty0, ty1);
+                    }
+                });
+            }
+        }
+        if (tiles.size() == 1) {
+            filterTile(src, dst, width, height, radius, 0, width, 0, height);
+            return;
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tiles);
+            }
+        });
+    }
+
+    /**
+     * Filtra las salidas [x0, x1) x [y0, y1).
+     */
+    static void filterTile(int[] src, int[] dst, int width, int height, int radius,
+                           int x0, int x1, int y0, int y1) {
+        if (x0 >= x1 || y0 >= y1) return;
+        if (radius == 1) {
+            filterTile3x3(src, dst, width, height, x0, x1, y0, y1);
+            return;
+        }
+
+        int diameter = 2 * radius + 1;
+        int columns = (x1 - x0) + 2 * radius;
+        int target = (diameter * diameter + 1) / 2;
+
+        // Coordenada x de la imagen para cada columna de histograma (borde replicado)
+        int[] columnX = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            columnX[j] = clamp(x0 - radius + j, width);
+        }
+
+        // Histogramas por columna, por canal: [canal][columna * bins + bin]
+        short[][] columnFine = new short[3][columns * FINE];
+        short[][] columnCoarse = new short[3][columns * COARSE];
+
+        for (int dy = -radius; dy <= radius; dy++) {
+            int row = clamp(y0 + dy, height) * width;
+            for (int j = 0; j < columns; j++) {
+                addPixel(columnFine, columnCoarse, j, src[row + columnX[j]], 1);
+            }
+        }
+
+        int[][] kernelCoarse = new int[3][COARSE];
+        int[][] kernelFine = new int[3][FINE];
+        // Inicio de ventana para el que está al día cada segmento fino del kernel (-1 = inválido)
+        int[][] fineValidAt = new int[3][COARSE];
+        int[] median = new int[3];
+
+        for (int y = y0; y < y1; y++) {
+            if (y > y0) {
+                int leaving = clamp(y - radius - 1, height) * width;
+                int entering = clamp(y + radius, height) * width;
+                for (int j = 0; j < columns; j++) {
+                    addPixel(columnFine, columnCoarse, j, src[leaving + columnX[j]], -1);
+                    addPixel(columnFine, columnCoarse, j, src[entering + columnX[j]], 1);
+                }
+            }
+
+            for (int c = 0; c < 3; c++) {
+                Arrays.fill(kernelCoarse[c], 0);
+                Arrays.fill(fineValidAt[c], -1);
+                for (int j = 0; j < diameter; j++) {
+                    for (int b = 0; b < COARSE; b++) {
+                        kernelCoarse[c][b] += columnCoarse[c][j * COARSE + b];
+                    }
+                }
+            }
+
+            int outRow = y * width;
+            for (int s = 0; s < x1 - x0; s++) {
+                for (int c = 0; c < 3; c++) {
+                    int[] kc = kernelCoarse[c];
+                    short[] cc = columnCoarse[c];
+                    if (s > 0) {
+                        int add = (s + diameter - 1) * COARSE;
+                        int remove = (s - 1) * COARSE;
+                        for (int b = 0; b < COARSE; b++) {
+                            kc[b] += cc[add + b] - cc[remove + b];
+                        }
+                    }
+
+                    // 1. Bin grueso que contiene la mediana
+                    int accumulated = 0;
+                    int bin = 0;
+                    while (accumulated + kc[bin] < target) {
+                        accumulated += kc[bin];
+                        bin++;
+                    }
+
+                    // 2. Poner al día (perezosamente) el segmento fino de ese bin y buscar dentro
+                    int[] kf = kernelFine[c];
+                    refreshFineSegment(kf, columnFine[c], fineValidAt[c], bin, s, diameter);
+                    int base = bin * COARSE;
+                    int v = base;
+                    while (accumulated + kf[v] < target) {
+                        accumulated += kf[v];
+                        v++;
+                    }
+                    median[c] = v;
+                }
+                dst[outRow + x0 + s] = (median[0] << 16) | (median[1] << 8) | median[2];
+            }
+        }
+    }
+
+    private static void filterTile3x3(int[] src, int[] dst, int width, int height,
+                                      int x0, int x1, int y0, int y1) {
+        int columns = (x1 - x0) + 2;
+        // Terna ordenada (mínimo, medio, máximo) de cada columna de 3 filas, empaquetada por canal
+        int[] low = new int[columns];
+        int[] mid = new int[columns];
+        int[] high = new int[columns];
+
+        for (int y = y0; y < y1; y++) {
+            int up = clamp(y - 1, height) * width;
+            int center = y * width;
+            int down = clamp(y + 1, height) * width;
+
+            for (int j = 0; j < columns; j++) {
+                int x = clamp(x0 - 1 + j, width);
+                int a = src[up + x];
+                int b = src[center + x];
+                int c = src[down + x];
+                int lo = 0, md = 0, hi = 0;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int va = (a >> shift) & 0xFF;
+                    int vb = (b >> shift) & 0xFF;
+                    int vc = (c >> shift) & 0xFF;
+                    int min = Math.min(va, Math.min(vb, vc));
+                    int max = Math.max(va, Math.max(vb, vc));
+                    lo |= min << shift;
+                    hi |= max << shift;
+                    md |= (va + vb + vc - min - max) << shift;
+                }
+                low[j] = lo;
+                mid[j] = md;
+                high[j] = hi;
+            }
+
+            int outRow = y * width + x0;
+            for (int s = 0; s < x1 - x0; s++) {
+                int result = 0;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int maxLow = Math.max((low[s] >> shift) & 0xFF, Math.max((low[s + 1] >> shift) & 0xFF, (low[s + 2] >> shift) & 0xFF));
+                    int minHigh = Math.min((high[s] >> shift) & 0xFF, Math.min((high[s + 1] >> shift) & 0xFF, (high[s + 2] >> shift) & 0xFF));
+                    int medMid = median3((mid[s] >> shift) & 0xFF, (mid[s + 1] >> shift) & 0xFF, (mid[s + 2] >> shift) & 0xFF);
+                    result |= median3(maxLow, medMid, minHigh) << shift;
+                }
+                dst[outRow + s] = result;
+            }
+        }
+    }
+
+    private static int median3(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void refreshFineSegment(int[] kernelFine, short[] columnFine, int[] validAt,
+                                           int bin, int windowStart, int diameter) {
+        int base = bin * COARSE;
+        int last = validAt[bin];
+        if (last == windowStart) return;
+
+        if (last < 0 || windowStart - last >= diameter) {
+            // Sin solapamiento con la ventana anterior: recomputar el segmento desde las columnas
+            Arrays.fill(kernelFine, base, base + COARSE, 0);
+            for (int j = windowStart; j < windowStart + diameter; j++) {
+                int offset = j * FINE + base;
+                for (int k = 0; k < COARSE; k++) {
+                    kernelFine[base + k] += columnFine[offset + k];
+                }
+            }
+        } else {
+            // Deslizar desde la última ventana válida
+            for (int t = last + 1; t <= windowStart; t++) {
+                int add = (t + diameter - 1) * FINE + base;
+                int remove = (t - 1) * FINE + base;
+                for (int k = 0; k < COARSE; k++) {
+                    kernelFine[base + k] += columnFine[add + k] - columnFine[remove + k];
+                }
+            }
+        }
+        validAt[bin] = windowStart;
+    }
+
+    private static void addPixel(short[][] fine, short[][] coarse, int column, int rgb, int delta) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        fine[0][column * FINE + r] += delta;
+        fine[1][column * FINE + g] += delta;
+        fine[2][column * FINE + b] += delta;
+        coarse[0][column * COARSE + (r >> 4)] += delta;
+        coarse[1][column * COARSE + (g >> 4)] += delta;
+        coarse[2][column * COARSE + (b >> 4)] += delta;
+    }
+
+    private static int clamp(int value, int size) {
+        return value < 0 ? 0 : (value >= size ? size - 1 : value);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Localiza la zona MRZ (tres líneas OCR-B del reverso del DNI, formato TD1) con perfiles de proyección
+ * horizontales sobre una versión reducida en gris: las filas de texto denso tienen muchas transiciones
+ * claro/oscuro a lo largo de casi todo el ancho, y la MRZ es el bloque de 2-4 líneas así más abajo en la tarjeta.
+ *
+ * Devuelve la franja a ancho completo en coordenadas de la imagen, o null si no hay un bloque convincente
+ * (el llamador envía entonces la imagen entera al OCR).
+ */
+final class MrzBandLocator {
+
+    // Diferencia mínima entre píxeles vecinos para contar una transición (sobre gris estirado)
+    private static final int EDGE_THRESHOLD = 40;
+    // La MRZ ocupa el tercio inferior de la tarjeta: se busca en el 60% inferior
+    private static final double SEARCH_FROM = 0.4;
+    // Una fila de MRZ tiene transiciones en casi todo el ancho útil
+    private static final double MIN_ROW_SPAN = 0.55;
+    private static final double MIN_ROW_DENSITY = 0.06;
+    // Alto de la franja respecto de la tarjeta
+    private static final double MIN_BAND_HEIGHT = 0.08;
+    private static final double MAX_BAND_HEIGHT = 0.45;
+    private static final int MIN_LINES = 2;
+    private static final int MAX_LINES = 4;
+
+    private MrzBandLocator() {
+    }
+
+    /**
+     * Franja MRZ en coordenadas de {@code image}, o null si no se encuentra.
+     */
+    static Rectangle locate(BufferedImage image, int locateWidth, RasterPool pool) {
+        int w = Math.min(locateWidth, image.getWidth());
+        int h = Math.max(1, (int) Math.round(image.getHeight() * ((double) w / image.getWidth())));
+        if (w < 64 || h < 32) {
+            return null;
+        }
+
+        BufferedImage gray = pool.leaseImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        try {
+            Graphics2D g = gray.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, w, h, null);
+            g.dispose();
+            int[] band = locateRows(((DataBufferByte) gray.getRaster().getDataBuffer()).getData(), w, h);
+            if (band == null) {
+                return null;
+            }
+            double scale = (double) image.getHeight() / h;
+            int y0 = (int) Math.floor(band[0] * scale);
+            int y1 = Math.min(image.getHeight(), (int) Math.ceil(band[1] * scale));
+            return new Rectangle(0, y0, image.getWidth(), y1 - y0);
+        } finally {
+            pool.release(gray);
+        }
+    }
+
+    /**
+     * Filas [inicio, fin) de la franja MRZ (ya con margen) sobre la luminancia w x h, o null.
+     */
+    static int[] locateRows(byte[] luminance, int w, int h) {
+        // 1. Perfil de proyección: transiciones por fila y extensión horizontal de las mismas
+        int x0 = w / 20;
+        int x1 = w - w / 20;
+        double[] density = new double[h];
+        boolean[] wide = new boolean[h];
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            int transitions = 0;
+            int first = -1;
+            int last = -1;
+            for (int x = x0; x < x1 - 1; x++) {
+                int d = (luminance[row + x] & 0xFF) - (luminance[row + x + 1] & 0xFF);
+                if (d >= EDGE_THRESHOLD || d <= -EDGE_THRESHOLD) {
+                    transitions++;
+                    if (first < 0) first = x;
+                    last = x;
+                }
+            }
+            density[y] = (double) transitions / (x1 - x0);
+            wide[y] = first >= 0 && (last - first) >= MIN_ROW_SPAN * (x1 - x0);
+        }
+        density = smooth(density, 1);
+
+        // 2. Umbral relativo a las filas más densas de la zona de búsqueda
+        int searchStart = (int) (h * SEARCH_FROM);
+        double peak = 0;
+        for (int y = searchStart; y < h; y++) {
+            peak = Math.max(peak, density[y]);
+        }
+        double threshold = Math.max(MIN_ROW_DENSITY, peak * 0.4);
+        if (peak < MIN_ROW_DENSITY) {
+            return null;
+        }
+
+        // 3. Líneas de texto: tramos de filas densas y anchas
+        int maxLines = h;
+        int[] lineStart = new int[maxLines];
+        int[] lineEnd = new int[maxLines];
+        int lines = 0;
+        for (int y = searchStart; y < h; ) {
+            if (density[y] >= threshold && wide[y]) {
+                int start = y;
+                while (y < h && density[y] >= threshold && wide[y]) y++;
+                if (y - start >= 2) {
+                    lineStart[lines] = start;
+                    lineEnd[lines] = y;
+                    lines++;
+                }
+            } else {
+                y++;
+            }
+        }
+        if (lines < MIN_LINES) {
+            return null;
+        }
+
+        // 4. Bloques: líneas consecutivas separadas por menos de una línea de alto; gana el más bajo válido
+        int best = -1;
+        int bestEnd = -1;
+        for (int i = 0; i < lines; ) {
+            int j = i;
+            while (j + 1 < lines) {
+                // Las filas de borde de una línea pueden quedar fuera del tramo: se compara con la más alta
+                int lineHeight = Math.max(lineEnd[j] - lineStart[j], lineEnd[j + 1] - lineStart[j + 1]);
+                int gap = lineStart[j + 1] - lineEnd[j];
+                if (gap > Math.max(3, lineHeight * 1.5)) break;
+                j++;
+            }
+            int count = j - i + 1;
+            int height = lineEnd[j] - lineStart[i];
+            if (count >= MIN_LINES && count <= MAX_LINES
+                    && height >= MIN_BAND_HEIGHT * h && height <= MAX_BAND_HEIGHT * h) {
+                best = i;
+                bestEnd = j;
+            }
+            i = j + 1;
+        }
+        if (best < 0) {
+            return null;
+        }
+
+        // Margen de media línea arriba y abajo para no cortar ascendentes ni descendentes
+        int lineHeight = (lineEnd[bestEnd] - lineStart[best]) / (bestEnd - best + 1);
+        int margin = Math.max(2, lineHeight / 2);
+        return new int[]{Math.max(0, lineStart[best] - margin), Math.min(h, lineEnd[bestEnd] + margin)};
+    }
+
+    private static double[] smooth(double[] values, int radius) {
+        double[] out = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            double sum = 0;
+            int n = 0;
+            for (int k = Math.max(0, i - radius); k <= Math.min(values.length - 1, i + radius); k++) {
+                sum += values[k];
+                n++;
+            }
+            out[i] = sum / n;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.RekoDemoBack.service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.regex.Pattern;
+
+/**
+ * Lectura estricta de la MRZ TD1 (tres líneas de 30 caracteres, ICAO 9303) con sus dígitos de control:
+ * número de documento, fecha de nacimiento, fecha de caducidad y el compuesto de las líneas 1 y 2.
+ * Un OCR que cambia o pierde un solo carácter de esos campos rompe algún dígito, así que
+ * {@link Td1#checksValid()} basta para fiarse de la MRZ sin esperar al anverso.
+ */
+final class MrzTd1 {
+
+    private static final int LINE_LENGTH = 30;
+    private static final int[] WEIGHTS = {7, 3, 1};
+
+    // Las líneas 1 y 3 pueden perder los '<' finales en el OCR; la 2 termina en el dígito compuesto
+    private static final Pattern LINE_1 = Pattern.compile("I[A-Z<][A-Z<]{3}[A-Z0-9<]{10,25}");
+    private static final Pattern LINE_2 = Pattern.compile("\\d{7}[MFX<]\\d{7}[A-Z<]{3}[A-Z0-9<]{11}\\d");
+    private static final Pattern LINE_3 = Pattern.compile("[A-Z<]{5,30}");
+
+    private MrzTd1() {
+    }
+
+    /**
+     * Campos de la MRZ; fechas en yyyy-MM-dd (null si no son fechas reales).
+     */
+    record Td1(String documentNumber, String surnames, String givenNames, String sex,
+               String birthDate, String expiryDate, String nationality, boolean checksValid) {
+    }
+
+    /**
+     * Busca las tres líneas de una MRZ TD1 en el texto de un OCR (en cualquier posición), o null si no están.
+     */
+    static Td1 find(String text) {
+        if (text == null) {
+            return null;
+        }
+        String[] lines = text.toUpperCase().replace("«", "<<").split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = lines[i].replaceAll("\\s+", "");
+        }
+
+        int line2 = -1;
+        for (int i = 0; i < lines.length && line2 < 0; i++) {
+            if (LINE_2.matcher(lines[i]).matches()) line2 = i;
+        }
+        if (line2 < 0) {
+            return null;
+        }
+        String line1 = null;
+        for (int i = line2 - 1; i >= 0 && line1 == null; i--) {
+            if (LINE_1.matcher(lines[i]).matches()) line1 = lines[i];
+        }
+        String line3 = null;
+        for (int i = line2 + 1; i < lines.length && line3 == null; i++) {
+            if (lines[i].contains("<<") && LINE_3.matcher(lines[i]).matches()) line3 = lines[i];
+        }
+        if (line1 == null || line3 == null) {
+            return null;
+        }
+        return parse(pad(line1), lines[line2], pad(line3));
+    }
+
+    static Td1 parse(String line1, String line2, String line3) {
+        String documentField = line1.substring(5, 14);
+        boolean checksValid = check(documentField, line1.charAt(14))
+                && check(line2.substring(0, 6), line2.charAt(6))
+                && check(line2.substring(8, 14), line2.charAt(14))
+                && check(line1.substring(5, 30) + line2.substring(0, 7) + line2.substring(8, 15) + line2.substring(18, 29),
+                line2.charAt(29));
+
+        int separator = line3.indexOf("<<");
+        String surnames = line3.substring(0, separator).replace('<', ' ').trim();
+        String givenNames = line3.substring(separator + 2).replace('<', ' ').trim().replaceAll("\\s+", " ");
+        char sex = line2.charAt(7);
+
+        return new Td1(
+                documentField.replace("<", ""),
+                surnames,
+                givenNames,
+                sex == 'M' || sex == 'F' ? String.valueOf(sex) : null,
+                date(line2.substring(0, 6), false),
+                date(line2.substring(8, 14), true),
+                line2.substring(15, 18).replace("<", ""),
+                checksValid
+        );
+    }
+
+    /**
+     * Dígito de control ICAO: pesos 7-3-1, dígitos por su valor, A-Z = 10-35 y '<' = 0; -1 si hay otro carácter.
+     */
+    static int checkDigit(CharSequence field) {
+        int sum = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            int value;
+            if (c >= '0' && c <= '9') value = c - '0';
+            else if (c >= 'A' && c <= 'Z') value = c - 'A' + 10;
+            else if (c == '<') value = 0;
+            else return -1;
+            sum += value * WEIGHTS[i % 3];
+        }
+        return sum % 10;
+    }
+
+    private static boolean check(String field, char digit) {
+        int expected = checkDigit(field);
+        return expected >= 0 && digit == (char) ('0' + expected);
+    }
+
+    private static String pad(String line) {
+        return line.length() >= LINE_LENGTH ? line : line + "<".repeat(LINE_LENGTH - line.length());
+    }
+
+    // YYMMDD: la caducidad siempre es de este siglo; el nacimiento, del pasado
+    private static String date(String yymmdd, boolean future) {
+        int yy = Integer.parseInt(yymmdd.substring(0, 2));
+        int year = future || yy <= LocalDate.now().getYear() % 100 ? 2000 + yy : 1900 + yy;
+        try {
+            return LocalDate.of(year, Integer.parseInt(yymmdd.substring(2, 4)), Integer.parseInt(yymmdd.substring(4, 6)))
+                    .toString();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.RekoDemoBack.service;
+
+import com.google.api.gax.core.BackgroundResource;
+import com.google.api.gax.grpc.ChannelPoolSettings;
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.cloud.documentai.v1.DocumentProcessorServiceClient;
+import com.google.cloud.documentai.v1.DocumentProcessorServiceSettings;
+import com.google.cloud.documentai.v1.ProcessorName;
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+import com.google.cloud.vision.v1.ImageAnnotatorSettings;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clientes gRPC de Cloud Vision y Document AI compartidos durante toda la vida del proceso.
+ * Crear un cliente por llamada paga en cada OCR la apertura del canal, el handshake TLS y la carga de
+ * credenciales; aquí se crean una vez (perezosamente o en el warm-up de arranque) con un pool de canales
+ * fijo y keep-alive, y se cierran al apagar el contexto.
+ *
+ * Los clientes de Google son thread-safe: las llamadas concurrentes se reparten entre los canales del pool.
+ * Toda llamada pasa por {@link #vision} / {@link #documentAi} para contar las que están en curso.
+ */
+@Service
+public class OcrClientManager {
+
+    @FunctionalInterface
+    public interface ClientCall<C, T> {
+        T call(C client) throws IOException;
+    }
+
+    public record ClientStats(boolean open, int inFlight, int peakInFlight, long calls, long errors,
+                              long averageMillis) {
+    }
+
+    public record Stats(ClientStats vision, ClientStats documentAi) {
+    }
+
+    private final int channelPoolSize;
+    private final long keepAliveSeconds;
+    private final long keepAliveTimeoutSeconds;
+    private final boolean warmUp;
+    private final String processorName;
+
+    private final Object visionLock = new Object();
+    private final Object documentAiLock = new Object();
+    private volatile ImageAnnotatorClient visionClient;
+    private volatile DocumentProcessorServiceClient documentAiClient;
+    private volatile boolean closed;
+
+    private final Meter visionMeter = new Meter();
+    private final Meter documentAiMeter = new Meter();
+
+    public OcrClientManager(@Value("${app.ocr.client.channel-pool-size:2}") int channelPoolSize,
+                            @Value("${app.ocr.client.keep-alive-seconds:60}") long keepAliveSeconds,
+                            @Value("${app.ocr.client.keep-alive-timeout-seconds:10}") long keepAliveTimeoutSeconds,
+                            @Value("${app.ocr.client.warm-up:true}") boolean warmUp,
+                            @Value("${google.cloud.project-id:}") String projectId,
+                            @Value("${google.cloud.location:us}") String location,
+                            @Value("${google.cloud.processor-id:}") String processorId) {
+        this.channelPoolSize = Math.max(1, channelPoolSize);
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.keepAliveTimeoutSeconds = keepAliveTimeoutSeconds;
+        this.warmUp = warmUp;
+        this.processorName = projectId.isBlank() || processorId.isBlank()
+                ? null
+                : ProcessorName.of(projectId, location, processorId).toString();
+    }
+
+    /**
+     * Ejecuta {@code call} con el cliente compartido de Cloud Vision. El cliente NO se cierra al terminar.
+     */
+    public <T> T vision(ClientCall<ImageAnnotatorClient, T> call) throws IOException {
+        return visionMeter.measure(call, visionClient());
+    }
+
+    /**
+     * Ejecuta {@code call} con el cliente compartido de Document AI. El cliente NO se cierra al terminar.
+     */
+    public <T> T documentAi(ClientCall<DocumentProcessorServiceClient, T> call) throws IOException {
+        return documentAiMeter.measure(call, documentAiClient());
+    }
+
+    public Stats stats() {
+        return new Stats(visionMeter.snapshot(visionClient != null),
+                documentAiMeter.snapshot(documentAiClient != null));
+    }
+
+    /**
+     * Warm-up en segundo plano tras el arranque: crea ambos clientes y fuerza la conexión de los canales
+     * (credenciales + TLS) con llamadas sin coste, para que el primer DNI no pague el arranque en frío.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUp) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                // Un batch vacío lo rechaza el servidor (INVALID_ARGUMENT) pero ya deja el canal abierto
+                visionClient().batchAnnotateImages(Collections.emptyList());
+            } catch (Exception e) {
+                // Esperado: lo que interesa es la conexión, no la respuesta
+            }
+            try {
+                DocumentProcessorServiceClient client = documentAiClient();
+                if (processorName != null) {
+                    client.getProcessor(processorName);
+                }
+            } catch (Exception e) {
+                System.err.println("⚠️ Warm-up de Document AI: " + e.getMessage());
+            }
+            System.out.println("🔥 Clientes OCR precalentados en " + (System.currentTimeMillis() - start)
+                    + "ms (pool de " + channelPoolSize + " canales)");
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        synchronized (visionLock) {
+            if (visionClient != null) {
+                close(visionClient, "Vision");
+                visionClient = null;
+            }
+        }
+        synchronized (documentAiLock) {
+            if (documentAiClient != null) {
+                close(documentAiClient, "Document AI");
+                documentAiClient = null;
+            }
+        }
+    }
+
+    private ImageAnnotatorClient visionClient() throws IOException {
+        ImageAnnotatorClient client = visionClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (visionLock) {
+            ensureOpen();
+            if (visionClient == null) {
+                ImageAnnotatorSettings settings = ImageAnnotatorSettings.newBuilder()
+                        .setTransportChannelProvider(channelProvider(
+                                ImageAnnotatorSettings.defaultGrpcTransportProviderBuilder()))
+                        .build();
+                visionClient = ImageAnnotatorClient.create(settings);
+                System.out.println("✅ Cliente de Cloud Vision creado (pool de " + channelPoolSize + " canales)");
+            }
+            return visionClient;
+        }
+    }
+
+    private DocumentProcessorServiceClient documentAiClient() throws IOException {
+        DocumentProcessorServiceClient client = documentAiClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (documentAiLock) {
+            ensureOpen();
+            if (documentAiClient == null) {
+                DocumentProcessorServiceSettings settings = DocumentProcessorServiceSettings.newBuilder()
+                        .setTransportChannelProvider(channelProvider(
+                                DocumentProcessorServiceSettings.defaultGrpcTransportProviderBuilder()))
+                        .build();
+                documentAiClient = DocumentProcessorServiceClient.create(settings);
+                System.out.println("✅ Cliente de Document AI creado (pool de " + channelPoolSize + " canales)");
+            }
+            return documentAiClient;
+        }
+    }
+
+    private InstantiatingGrpcChannelProvider channelProvider(InstantiatingGrpcChannelProvider.Builder builder) {
+        // Keep-alive también sin llamadas activas: evita que un balanceador cierre el canal entre DNIs
+        return builder
+                .setChannelPoolSettings(ChannelPoolSettings.staticallySized(channelPoolSize))
+                .setKeepAliveTime(org.threeten.bp.Duration.ofSeconds(keepAliveSeconds))
+                .setKeepAliveTimeout(org.threeten.bp.Duration.ofSeconds(keepAliveTimeoutSeconds))
+                .setKeepAliveWithoutCalls(true)
+                .build();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Los clientes OCR ya se cerraron (apagando la aplicación)");
+        }
+    }
+
+    private static void close(BackgroundResource client, String name) {
+        try {
+            // Deja terminar las llamadas en curso antes de cerrar los canales
+            client.shutdown();
+            if (!client.awaitTermination(5, TimeUnit.SECONDS)) {
+                client.shutdownNow();
+            }
+            System.out.println("🛑 Cliente de " + name + " cerrado");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("⚠️ Error cerrando el cliente de " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Meter {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+
+        <C, T> T measure(ClientCall<C, T> call, C client) throws IOException {
+            int current = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(current, Math::max);
+            long start = System.nanoTime();
+            try {
+                return call.call(client);
+            } catch (IOException | RuntimeException e) {
+                errors.incrementAndGet();
+                throw e;
+            } finally {
+                totalNanos.addAndGet(System.nanoTime() - start);
+                calls.incrementAndGet();
+                inFlight.decrementAndGet();
+            }
+        }
+
+        ClientStats snapshot(boolean open) {
+            long total = calls.get();
+            long averageMillis = total == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / total);
+            return new ClientStats(open, inFlight.get(), peakInFlight.get(), total, errors.get(), averageMillis);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interfaz Strategy para el OCR de las imágenes del DNI
+ * Permite múltiples implementaciones (Vision, Document AI, replay local, etc.)
+ */
+public interface OcrProvider {
+
+    /**
+     * Extrae el texto de una imagen
+     * @param image Imagen a leer (normalmente la versión OCR en gris)
+     * @return Texto en el formato propio del proveedor (el parser entiende ambos)
+     */
+    String extractText(MultipartFile image) throws IOException;
+
+    /**
+     * Extrae el texto de varias imágenes, en el orden de entrada. Una imagen sin texto devuelve ""
+     * en su posición: el llamador decide qué hacer con esa cara sin perder las demás.
+     * Por defecto una llamada por imagen; los proveedores con API por lotes la sobrescriben.
+     */
+    default List<String> extractTexts(List<MultipartFile> images) throws IOException {
+        List<String> texts = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            texts.add(extractText(image));
+        }
+        return texts;
+    }
+
+    /**
+     * Obtiene el nombre del proveedor
+     * @return Nombre del proveedor (vision, documentai, replay, etc.)
+     */
+    String getProviderName();
+}
@@ -0,0 +1,85 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Versión de la imagen pensada solo para OCR: un canal de luminancia (TYPE_BYTE_GRAY) con estiramiento
+ * de contraste entre percentiles. El OCR no usa el color, así que el payload baja a una fracción del RGB.
+ */
+final class OcrRendition {
+
+    // Percentiles que se llevan a 0 y 255 (ignora reflejos y sombras puntuales)
+    private static final double LOW_PERCENTILE = 0.01;
+    private static final double HIGH_PERCENTILE = 0.99;
+
+    // Por debajo de este rango el estiramiento amplificaría solo ruido
+    private static final int MIN_STRETCH_RANGE = 16;
+
+    private OcrRendition() {
+    }
+
+    /**
+     * Convierte a gris (reduciendo a maxWidth si hace falta) y estira el contraste.
+     * La imagen gris sale del pool; el llamador la devuelve tras codificarla.
+     */
+    static BufferedImage toStretchedGray(BufferedImage image, int maxWidth, RasterPool pool) {
+        BufferedImage rgb = scaledIntRgb(image, maxWidth, pool);
+        int w = rgb.getWidth();
+        int h = rgb.getHeight();
+
+        // Conversión por kernel directo al raster: drawImage sobre TYPE_BYTE_GRAY aplicaría la
+        // conversión a gris lineal y oscurecería el texto
+        BufferedImage gray = pool.leaseImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] luminance = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        PixelKernels.get().toGray(PixelKernels.rgbPixels(rgb), luminance, luminance.length);
+        if (rgb != image) {
+            pool.release(rgb);
+        }
+
+        stretch(luminance);
+        return gray;
+    }
+
+    static void stretch(byte[] luminance) {
+        int[] histogram = new int[256];
+        for (byte value : luminance) {
+            histogram[value & 0xFF]++;
+        }
+        int low = percentile(histogram, luminance.length, LOW_PERCENTILE);
+        int high = percentile(histogram, luminance.length, HIGH_PERCENTILE);
+        int range = high - low;
+        if (range < MIN_STRETCH_RANGE || (low == 0 && high == 255)) {
+            return;
+        }
+
+        ToneCurve.levels(low, high).apply(luminance, luminance.length);
+    }
+
+    private static int percentile(int[] histogram, long total, double fraction) {
+        long threshold = Math.max(1, (long) Math.ceil(total * fraction));
+        long accumulated = 0;
+        for (int v = 0; v < 256; v++) {
+            accumulated += histogram[v];
+            if (accumulated >= threshold) return v;
+        }
+        return 255;
+    }
+
+    private static BufferedImage scaledIntRgb(BufferedImage image, int maxWidth, RasterPool pool) {
+        if (image.getWidth() <= maxWidth && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        int w = Math.min(image.getWidth(), maxWidth);
+        int h = (int) Math.max(1, Math.round(image.getHeight() * ((double) w / image.getWidth())));
+        BufferedImage scaled = pool.leaseImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, w, h);
+        g.drawImage(image, 0, 0, w, h, null);
+        g.dispose();
+        return scaled;
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.RekoDemoBack.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Almacén persistente de resultados de OCR direccionado por contenido: clave = SHA-256 de la imagen enviada
+ * + proveedor + features. Una reentrega de las mismas fotos (típico tras una verificación fallida) no vuelve
+ * a llamar al OCR remoto, ni siquiera después de reiniciar.
+ *
+ * Formato: un único archivo append-only con cabecera y registros
+ * [keyLength:int][valueLength:int][createdAt:long][key][value][crc32:int]. En memoria solo se guarda el
+ * índice clave -> posición; el texto se lee del archivo en cada acierto. Al arrancar se recorre el archivo
+ * y se trunca en el primer registro incompleto o con CRC inválido (escritura cortada por una caída).
+ *
+ * Cuando el archivo supera max-bytes se compacta: se reescriben las entradas vigentes más recientes
+ * hasta 3/4 del presupuesto y el archivo nuevo reemplaza al anterior de forma atómica.
+ */
+@Service
+public class OcrResultStore {
+
+    private static final int MAGIC = 0x4F435231; // "OCR1"
+    private static final int FILE_HEADER_BYTES = 4;
+    private static final int RECORD_HEADER_BYTES = 4 + 4 + 8;
+    private static final int RECORD_TRAILER_BYTES = 4;
+    private static final int MAX_KEY_BYTES = 1024;
+    private static final int MAX_VALUE_BYTES = 16 * 1024 * 1024;
+
+    private record Entry(long offset, int length, long createdAt) {
+    }
+
+    public record Stats(boolean enabled, int entries, long fileBytes, long maxBytes, long hits, long misses,
+                        long writes, long expired, long compactions) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+
+    private final long ttlMs;
+    private final long maxBytes;
+    private final Path file;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    // Lecturas posicionales concurrentes; el lock de escritura serializa los appends y el cambio de archivo
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private long end;
+    private volatile boolean available;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    public OcrResultStore(@Value("${app.ocr.result-store.enabled:true}") boolean enabled,
+                          @Value("${app.ocr.result-store.dir:ocr-store}") String dir,
+                          @Value("${app.ocr.result-store.ttl-seconds:604800}") long ttlSeconds,
+                          @Value("${app.ocr.result-store.max-bytes:33554432}") long maxBytes) {
+        this.ttlMs = ttlSeconds * 1000;
+        this.maxBytes = maxBytes;
+        this.file = Path.of(dir, "ocr-results.log");
+        if (enabled) {
+            try {
+                Files.createDirectories(file.getParent());
+                openAndLoad();
+                available = true;
+                System.out.println("✅ Almacén de resultados OCR: " + index.size() + " entradas en "
+                        + file.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("⚠️ Almacén de resultados OCR deshabilitado: " + e.getMessage());
+                closeQuietly();
+                index.clear();
+            }
+        }
+    }
+
+    /**
+     * Clave de un resultado: la misma imagen con otro proveedor o con otras features es otra entrada.
+     */
+    public static String key(String sha256Hex, String provider, String features) {
+        return sha256Hex + ":" + provider + ":" + features;
+    }
+
+    public boolean isEnabled() {
+        return available;
+    }
+
+    /**
+     * Texto guardado para la clave, o null si no existe, expiró o el registro está dañado.
+     */
+    public String get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            // Dentro del lock: una compactación concurrente cambia las posiciones de todo el índice
+            Entry entry = index.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.createdAt() > ttlMs) {
+                index.remove(key, entry);
+                expired.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(entry.length());
+            readFully(channel, record, entry.offset());
+            String value = decodeValue(record, key);
+            if (value == null) {
+                index.remove(key, entry);
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return value;
+        } catch (IOException e) {
+            System.err.println("⚠️ Error leyendo el almacén OCR: " + e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Añade (o reemplaza) el resultado. Los textos vacíos no se guardan: suelen ser fallos, no resultados.
+     */
+    public void put(String key, String value) {
+        if (!isEnabled() || value == null || value.isEmpty()) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_BYTES || valueBytes.length > MAX_VALUE_BYTES) {
+            return;
+        }
+        long createdAt = System.currentTimeMillis();
+        ByteBuffer record = encodeRecord(keyBytes, valueBytes, createdAt);
+
+        lock.writeLock().lock();
+        try {
+            long offset = end;
+            writeFully(channel, record, offset);
+            end += record.capacity();
+            index.put(key, new Entry(offset, record.capacity(), createdAt));
+            writes.incrementAndGet();
+            if (end > maxBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Error escribiendo en el almacén OCR: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(isEnabled(), index.size(), end, maxBytes, hits.get(), misses.get(), writes.get(),
+                    expired.get(), compactions.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            available = false;
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openAndLoad() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < FILE_HEADER_BYTES) {
+            channel.truncate(0);
+            writeFully(channel, ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(0, MAGIC), 0);
+            end = FILE_HEADER_BYTES;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Archivo de resultados OCR con formato desconocido: " + file);
+        }
+
+        long size = channel.size();
+        long offset = FILE_HEADER_BYTES;
+        long now = System.currentTimeMillis();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (offset + RECORD_HEADER_BYTES <= size) {
+            recordHeader.clear();
+            readFully(channel, recordHeader, offset);
+            int keyLength = recordHeader.getInt(0);
+            int valueLength = recordHeader.getInt(4);
+            if (keyLength <= 0 || keyLength > MAX_KEY_BYTES || valueLength < 0 || valueLength > MAX_VALUE_BYTES) {
+                break;
+            }
+            int length = RECORD_HEADER_BYTES + keyLength + valueLength + RECORD_TRAILER_BYTES;
+            if (offset + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(channel, record, offset);
+            String key = decodeKey(record);
+            if (key == null) {
+                break;
+            }
+            long createdAt = record.getLong(8);
+            // El último registro de una clave gana; los expirados ni siquiera entran al índice
+            if (now - createdAt <= ttlMs) {
+                index.put(key, new Entry(offset, length, createdAt));
+            } else {
+                index.remove(key);
+            }
+            offset += length;
+        }
+        if (offset < size) {
+            System.err.println("⚠️ Almacén OCR: registro incompleto o dañado en " + offset
+                    + ", se descartan " + (size - offset) + " bytes finales");
+            channel.truncate(offset);
+        }
+        end = offset;
+        if (end > maxBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Reescribe las entradas vigentes (las más recientes primero) hasta 3/4 del presupuesto. Con el lock de escritura.
+     */
+    private void compact() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> live = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : index.entrySet()) {
+            if (now - e.getValue().createdAt() <= ttlMs) {
+                live.add(e);
+            }
+        }
+        // Las más recientes primero (a igual milisegundo, la que está más al final del archivo)
+        live.sort(Comparator.comparingLong((Map.Entry<String, Entry> e) -> e.getValue().createdAt())
+                .thenComparingLong(e -> e.getValue().offset())
+                .reversed());
+
+        long target = maxBytes / 4 * 3;
+        long keptBytes = FILE_HEADER_BYTES;
+        List<Map.Entry<String, Entry>> kept = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : live) {
+            if (keptBytes + e.getValue().length() <= target) {
+                kept.add(e);
+                keptBytes += e.getValue().length();
+            }
+        }
+        // Se reescriben en el orden original para que la posición siga reflejando la antigüedad
+        kept.sort(Comparator.comparingLong(e -> e.getValue().offset()));
+
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        Map<String, Entry> compacted = new ConcurrentHashMap<>();
+        long offset = FILE_HEADER_BYTES;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(0, MAGIC), 0);
+            for (Map.Entry<String, Entry> e : kept) {
+                Entry entry = e.getValue();
+                ByteBuffer record = ByteBuffer.allocate(entry.length());
+                readFully(channel, record, entry.offset());
+                writeFully(out, record.flip(), offset);
+                compacted.put(e.getKey(), new Entry(offset, entry.length(), entry.createdAt()));
+                offset += entry.length();
+            }
+            out.force(true);
+        }
+
+        long before = end;
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        index.putAll(compacted);
+        end = offset;
+        compactions.incrementAndGet();
+        System.out.println("🗜️ Almacén OCR compactado: " + before / 1024 + " KB -> " + end / 1024 + " KB ("
+                + compacted.size() + " entradas)");
+    }
+
+    private static ByteBuffer encodeRecord(byte[] key, byte[] value, long createdAt) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + key.length + value.length + RECORD_TRAILER_BYTES);
+        record.putInt(key.length).putInt(value.length).putLong(createdAt).put(key).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Clave del registro si el CRC cuadra, null si está dañado.
+     */
+    private static String decodeKey(ByteBuffer record) {
+        int length = record.capacity();
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length - RECORD_TRAILER_BYTES);
+        if ((int) crc.getValue() != record.getInt(length - RECORD_TRAILER_BYTES)) {
+            return null;
+        }
+        return new String(record.array(), RECORD_HEADER_BYTES, record.getInt(0), StandardCharsets.UTF_8);
+    }
+
+    private static String decodeValue(ByteBuffer record, String expectedKey) {
+        String key = decodeKey(record);
+        if (!expectedKey.equals(key)) {
+            return null;
+        }
+        int keyLength = record.getInt(0);
+        int valueLength = record.getInt(4);
+        return new String(record.array(), RECORD_HEADER_BYTES + keyLength, valueLength, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Fin de archivo inesperado en " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Cerrando: no hay nada más que hacer
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Punto único de OCR: elige el {@link OcrProvider} por nombre.
+ * Cada flujo pide su proveedor natural (Document AI en el modo mock, Vision en el híbrido) y
+ * app.ocr.provider lo sustituye en todos (p.ej. "replay" para medir el pipeline sin Google).
+ * Con replay se reproduce la grabación del proveedor natural que se pidió.
+ */
+@Service
+public class OcrService {
+
+    private static final String REPLAY = "replay";
+
+    private final Map<String, OcrProvider> providers;
+    private final ReplayOcrProvider replayProvider;
+
+    // Vacío: cada flujo usa su proveedor por defecto
+    @Value("${app.ocr.provider:}")
+    private String providerOverride;
+
+    // Graba cada resultado de un proveedor real como fixture del proveedor replay
+    @Value("${app.ocr.replay.record:false}")
+    private boolean record;
+
+    public OcrService(List<OcrProvider> providerList, ReplayOcrProvider replayProvider) {
+        this.providers = providerList.stream()
+                .collect(Collectors.toMap(
+                        provider -> provider.getProviderName().toLowerCase(),
+                        Function.identity()
+                ));
+        this.replayProvider = replayProvider;
+    }
+
+    /**
+     * Proveedor efectivo para un flujo cuyo proveedor natural es {@code defaultProvider}.
+     */
+    public String resolve(String defaultProvider) {
+        return providerOverride == null || providerOverride.isBlank() ? defaultProvider : providerOverride;
+    }
+
+    /**
+     * Si el OCR de {@code provider} se sirve desde las grabaciones de replay.
+     */
+    public boolean replays(String provider) {
+        return REPLAY.equalsIgnoreCase(resolve(provider));
+    }
+
+    /**
+     * OCR con el proveedor natural {@code provider}, o con el que indique app.ocr.provider.
+     */
+    public String extractText(MultipartFile image, String provider) throws IOException {
+        if (replays(provider)) {
+            return replayProvider.extractText(image, provider);
+        }
+        String effective = resolve(provider);
+        String text = provider(effective).extractText(image);
+        recordIfEnabled(effective, image, text);
+        return text;
+    }
+
+    public List<String> extractTexts(List<MultipartFile> images, String provider) throws IOException {
+        if (replays(provider)) {
+            return replayProvider.extractTexts(images, provider);
+        }
+        String effective = resolve(provider);
+        List<String> texts = provider(effective).extractTexts(images);
+        for (int i = 0; i < images.size(); i++) {
+            recordIfEnabled(effective, images.get(i), texts.get(i));
+        }
+        return texts;
+    }
+
+    private OcrProvider provider(String name) {
+        OcrProvider provider = providers.get(name.toLowerCase());
+        if (provider == null) {
+            throw new IllegalArgumentException(
+                    "El proveedor OCR '" + name + "' no está implementado o mal configurado."
+            );
+        }
+        return provider;
+    }
+
+    private void recordIfEnabled(String provider, MultipartFile image, String text) {
+        if (!record || text == null || text.isEmpty()) {
+            return;
+        }
+        try {
+            Path file = replayProvider.recordingFor(provider, UploadIngestionService.sha256Hex(image));
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo grabar el OCR para replay: " + e.getMessage());
+        }
+    }
+}
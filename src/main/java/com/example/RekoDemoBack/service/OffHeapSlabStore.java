@@ -0,0 +1,348 @@
+package com.example.RekoDemoBack.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Almacén fuera del heap para payloads cacheados (JPEGs preprocesados).
+ * Reparte slabs de memoria directa (o archivos mapeados en memoria) en páginas fijas;
+ * cada payload ocupa una lista de páginas, así que nunca se necesita un bloque contiguo
+ * ni se generan objetos "humongous" en G1.
+ *
+ * Cada payload lleva un contador de referencias: quien lo guarda (la caché) tiene la primera y la
+ * devuelve con {@link Payload#release()} al desalojarlo; los lectores ({@link Payload#retain()},
+ * streams abiertos, copias en curso) toman la suya mientras leen. Las páginas vuelven al slab cuando
+ * el contador llega a cero, sin esperar al GC. El Cleaner solo recupera las páginas de un payload
+ * que se perdió sin liberar (fuga).
+ */
+public class OffHeapSlabStore {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int pageSize;
+    private final int pagesPerSlab;
+    private final int maxSlabs;
+    private final Path mappedFileDir;
+
+    // Solo crece; se republica como array para que las lecturas no necesiten lock
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private final BitSet freePages = new BitSet();
+    private int usedPages;
+
+    /**
+     * @param mappedFileDir si no es null, cada slab es un archivo temporal mapeado en ese directorio;
+     *                      si es null, se usan ByteBuffer.allocateDirect.
+     */
+    public OffHeapSlabStore(int slabBytes, int pageSize, int maxSlabs, Path mappedFileDir) {
+        if (pageSize <= 0 || slabBytes < pageSize) {
+            throw new IllegalArgumentException("Tamaño de slab/página inválido: " + slabBytes + "/" + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.pagesPerSlab = slabBytes / pageSize;
+        this.maxSlabs = maxSlabs;
+        this.mappedFileDir = mappedFileDir;
+    }
+
+    /**
+     * Copia el contenido a páginas fuera del heap. Devuelve null si no queda espacio
+     * (el llamador debe quedarse con la copia en heap).
+     */
+    public Payload store(byte[] content) {
+        int needed = Math.max(1, (content.length + pageSize - 1) / pageSize);
+        int[] pages = allocatePages(needed);
+        if (pages == null) return null;
+
+        int written = 0;
+        for (int page : pages) {
+            int len = Math.min(pageSize, content.length - written);
+            if (len <= 0) break;
+            slabFor(page).put(offsetOf(page), content, written, len);
+            written += len;
+        }
+
+        PageLease lease = new PageLease(this, pages);
+        Payload payload = new Payload(this, lease, content.length);
+        CLEANER.register(payload, lease::reclaim);
+        return payload;
+    }
+
+    public synchronized long usedBytes() {
+        return (long) usedPages * pageSize;
+    }
+
+    public synchronized long capacityBytes() {
+        return (long) maxSlabs * pagesPerSlab * pageSize;
+    }
+
+    private synchronized int[] allocatePages(int needed) {
+        while (freePages.cardinality() < needed && slabs.length < maxSlabs) {
+            if (!addSlab()) break;
+        }
+        if (freePages.cardinality() < needed) return null;
+
+        int[] pages = new int[needed];
+        int page = -1;
+        for (int i = 0; i < needed; i++) {
+            page = freePages.nextSetBit(page + 1);
+            pages[i] = page;
+            freePages.clear(page);
+        }
+        usedPages += needed;
+        return pages;
+    }
+
+    private synchronized void releasePages(int[] pages) {
+        for (int page : pages) {
+            freePages.set(page);
+        }
+        usedPages -= pages.length;
+    }
+
+    private boolean addSlab() {
+        int slabBytes = pagesPerSlab * pageSize;
+        try {
+            ByteBuffer slab;
+            if (mappedFileDir != null) {
+                Files.createDirectories(mappedFileDir);
+                Path file = Files.createTempFile(mappedFileDir, "image-cache-slab-", ".bin");
+                file.toFile().deleteOnExit();
+                try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+                     FileChannel channel = raf.getChannel()) {
+                    slab = channel.map(FileChannel.MapMode.READ_WRITE, 0, slabBytes);
+                }
+            } else {
+                slab = ByteBuffer.allocateDirect(slabBytes);
+            }
+            int firstPage = slabs.length * pagesPerSlab;
+            ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[slabs.length] = slab;
+            slabs = grown;
+            freePages.set(firstPage, firstPage + pagesPerSlab);
+            System.out.println("🧱 Nuevo slab off-heap (" + slabs.length + "/" + maxSlabs + ", "
+                    + slabBytes / (1024 * 1024) + " MB)");
+            return true;
+        } catch (IOException | OutOfMemoryError e) {
+            System.err.println("⚠️ No se pudo reservar slab off-heap: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private ByteBuffer slabFor(int page) {
+        return slabs[page / pagesPerSlab];
+    }
+
+    private int offsetOf(int page) {
+        return (page % pagesPerSlab) * pageSize;
+    }
+
+    /**
+     * Referencia a un payload fuera del heap. Las lecturas usan get absoluto, por lo que varios hilos
+     * pueden leer el mismo payload a la vez; cada lectura retiene el payload mientras dura.
+     */
+    public static final class Payload {
+        private final OffHeapSlabStore store;
+        private final PageLease lease;
+        private final int[] pages;
+        private final int length;
+
+        private Payload(OffHeapSlabStore store, PageLease lease, int length) {
+            this.store = store;
+            this.lease = lease;
+            this.pages = lease.pages;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Toma una referencia más; false si las páginas ya se liberaron (el payload ya no se puede leer).
+         */
+        public boolean retain() {
+            return lease.retain();
+        }
+
+        /**
+         * Devuelve una referencia; con la última, las páginas vuelven al slab.
+         */
+        public void release() {
+            lease.release();
+        }
+
+        /**
+         * Stream que retiene el payload hasta close().
+         */
+        public InputStream openStream() {
+            requireRetained();
+            return new PayloadInputStream(this);
+        }
+
+        /**
+         * Copia el payload al heap. Solo para consumidores que exigen byte[] (MultipartFile.getBytes).
+         */
+        public byte[] toByteArray() {
+            requireRetained();
+            try {
+                byte[] copy = new byte[length];
+                read(0, copy, 0, length);
+                return copy;
+            } finally {
+                release();
+            }
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            requireRetained();
+            try {
+                byte[] chunk = new byte[Math.min(length, store.pageSize)];
+                int position = 0;
+                while (position < length) {
+                    int n = read(position, chunk, 0, chunk.length);
+                    out.write(chunk, 0, n);
+                    position += n;
+                }
+            } finally {
+                release();
+            }
+        }
+
+        private void requireRetained() {
+            if (!retain()) {
+                throw new IllegalStateException("El payload off-heap ya fue liberado");
+            }
+        }
+
+        int read(int position, byte[] dst, int off, int len) {
+            int total = 0;
+            while (total < len && position < length) {
+                int pageIndex = position / store.pageSize;
+                int inPage = position % store.pageSize;
+                int n = Math.min(Math.min(len - total, store.pageSize - inPage), length - position);
+                int page = pages[pageIndex];
+                store.slabFor(page).get(store.offsetOf(page) + inPage, dst, off + total, n);
+                total += n;
+                position += n;
+            }
+            return total;
+        }
+    }
+
+    private static final class PayloadInputStream extends InputStream {
+        private final Payload payload;
+        private int position;
+        private int mark;
+        private boolean closed;
+
+        PayloadInputStream(Payload payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public int read() {
+            if (closed || position >= payload.length) return -1;
+            byte[] one = new byte[1];
+            payload.read(position++, one, 0, 1);
+            return one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (closed || position >= payload.length) return -1;
+            int n = payload.read(position, b, off, len);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, payload.length - position));
+            position += (int) skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return payload.length - position;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public synchronized void reset() {
+            position = mark;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                payload.release();
+            }
+        }
+    }
+
+    /**
+     * Contador de referencias de las páginas de un payload. También es la acción del Cleaner,
+     * así que no debe referenciar al Payload para que este pueda ser recolectado.
+     */
+    private static final class PageLease {
+        private final OffHeapSlabStore store;
+        private final int[] pages;
+        // La primera referencia es la de quien llama a store()
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        PageLease(OffHeapSlabStore store, int[] pages) {
+            this.store = store;
+            this.pages = pages;
+        }
+
+        boolean retain() {
+            int current;
+            do {
+                current = refs.get();
+                if (current <= 0) return false;
+            } while (!refs.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            int current;
+            do {
+                current = refs.get();
+                if (current <= 0) return;
+            } while (!refs.compareAndSet(current, current - 1));
+            if (current == 1) {
+                store.releasePages(pages);
+            }
+        }
+
+        // Cleaner: el payload ya es inalcanzable, nadie puede retenerlo; si aún tenía referencias, fue una fuga
+        void reclaim() {
+            if (refs.getAndSet(0) > 0) {
+                System.err.println("⚠️ Payload off-heap recuperado por el Cleaner sin release() ("
+                        + pages.length + " páginas)");
+                store.releasePages(pages);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.RekoDemoBack.service;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Motor nativo con OpenCV: resize (INTER_AREA al reducir, INTER_CUBIC al ampliar),
+ * contraste lineal saturado y filter2D para el enfoque.
+ * Todos los Mat se liberan en finally; no se depende del finalizador para la memoria nativa.
+ */
+@Service
+@ConditionalOnProperty(name = "app.preprocessing.engine", havingValue = "opencv")
+public class OpenCvPreprocessingEngine implements PreprocessingEngine {
+
+    private static final float[] SHARPEN_KERNEL = {
+            0, -1, 0,
+            -1, 5, -1,
+            0, -1, 0
+    };
+
+    // Radio de la mediana (1 = 3x3); medianBlur usa apertura 2r+1
+    private final int denoiseRadius;
+
+    // Rasters BGR de entrada/salida reutilizables (los Mat siguen siendo memoria nativa propia)
+    private final RasterPool rasterPool;
+
+    public OpenCvPreprocessingEngine(@Value("${app.preprocessing.denoise.radius:1}") int denoiseRadius,
+                                     RasterPool rasterPool) {
+        this.denoiseRadius = denoiseRadius;
+        this.rasterPool = rasterPool;
+        OpenCvRuntime.ensureLoaded();
+        System.out.println("✅ Motor de preprocesamiento: OpenCV");
+    }
+
+    @Override
+    public BufferedImage enhance(BufferedImage image, PreprocessingPlan plan) {
+        if (!plan.resample() && !plan.contrast() && !plan.sharpen() && !plan.denoise()
+                && !image.getColorModel().hasAlpha()) {
+            return image;
+        }
+
+        List<Mat> mats = new ArrayList<>();
+        try {
+            Mat current = track(mats, toMat(image));
+
+            if (plan.resample()) {
+                int targetWidth = plan.targetWidth();
+                int targetHeight = (int) (image.getHeight() * ((double) targetWidth / image.getWidth()));
+                int interpolation = targetWidth < image.getWidth() ? Imgproc.INTER_AREA : Imgproc.INTER_CUBIC;
+                Mat resized = track(mats, new Mat());
+                Imgproc.resize(current, resized, new Size(targetWidth, targetHeight), 0, 0, interpolation);
+                current = resized;
+            }
+
+            if (plan.denoise()) {
+                Mat denoised = track(mats, new Mat());
+                Imgproc.medianBlur(current, denoised, 2 * denoiseRadius + 1);
+                current = denoised;
+            }
+
+            if (plan.contrast()) {
+                // convertTo satura a [0,255] como el RescaleOp(1.2, -20) original;
+                // convertScaleAbs tomaría el valor absoluto y aclararía los negros
+                Mat contrasted = track(mats, new Mat());
+                current.convertTo(contrasted, -1, 1.2, -20);
+                current = contrasted;
+            }
+
+            if (plan.sharpen()) {
+                Mat kernel = track(mats, new Mat(3, 3, CvType.CV_32F));
+                kernel.put(0, 0, SHARPEN_KERNEL);
+                Mat sharpened = track(mats, new Mat());
+                Imgproc.filter2D(current, sharpened, -1, kernel, new Point(-1, -1), 0, Core.BORDER_REPLICATE);
+                current = sharpened;
+            }
+
+            System.out.println("🎨 Mejoras aplicadas con OpenCV (" + current.cols() + "x" + current.rows() + ")");
+            return toBufferedImage(current);
+        } finally {
+            for (Mat mat : mats) {
+                mat.release();
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "opencv";
+    }
+
+    private static Mat track(List<Mat> mats, Mat mat) {
+        mats.add(mat);
+        return mat;
+    }
+
+    private Mat toMat(BufferedImage image) {
+        BufferedImage bgr = image;
+        if (image.getType() != BufferedImage.TYPE_3BYTE_BGR || image.getRaster().getParent() != null) {
+            bgr = rasterPool.leaseImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D g = bgr.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        byte[] data = ((DataBufferByte) bgr.getRaster().getDataBuffer()).getData();
+        Mat mat = new Mat(bgr.getHeight(), bgr.getWidth(), CvType.CV_8UC3);
+        mat.put(0, 0, data);
+        if (bgr != image) {
+            rasterPool.release(bgr);
+        }
+        return mat;
+    }
+
+    private BufferedImage toBufferedImage(Mat mat) {
+        BufferedImage image = rasterPool.leaseImage(mat.cols(), mat.rows(), BufferedImage.TYPE_3BYTE_BGR);
+        mat.get(0, 0, ((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        return image;
+    }
+}
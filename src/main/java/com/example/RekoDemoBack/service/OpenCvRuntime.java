@@ -0,0 +1,30 @@
+package com.example.RekoDemoBack.service;
+
+/**
+ * Carga única de la librería nativa de OpenCV empaquetada en org.openpnp:opencv.
+ */
+final class OpenCvRuntime {
+
+    private static volatile boolean loaded;
+
+    private OpenCvRuntime() {
+    }
+
+    /**
+     * Extrae y carga la librería nativa la primera vez. Lanza IllegalStateException si la
+     * plataforma no está soportada por el artefacto.
+     */
+    static void ensureLoaded() {
+        if (loaded) return;
+        synchronized (OpenCvRuntime.class) {
+            if (loaded) return;
+            try {
+                nu.pattern.OpenCV.loadLocally();
+                loaded = true;
+                System.out.println("✅ OpenCV nativo cargado: " + org.opencv.core.Core.VERSION);
+            } catch (Throwable e) {
+                throw new IllegalStateException("No se pudo cargar OpenCV nativo: " + e.getMessage(), e);
+            }
+        }
+    }
+}
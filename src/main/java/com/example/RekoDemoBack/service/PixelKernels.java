@@ -0,0 +1,97 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Kernels de píxel sobre arrays empaquetados 0xRRGGBB (TYPE_INT_RGB) y luminancia en bytes.
+ * Hay una implementación escalar y otra SIMD con jdk.incubator.vector; ambas producen
+ * exactamente el mismo resultado (aritmética entera).
+ *
+ * La SIMD solo se usa si el módulo está en la capa de arranque (--add-modules jdk.incubator.vector);
+ * se carga por reflexión para que su ausencia no provoque NoClassDefFoundError.
+ * La elección la hace la configuración de Spring con app.simd.enabled ({@link #install(boolean)}).
+ */
+public interface PixelKernels {
+
+    // Suavizado gaussiano 3x3 (1 2 1 / 2 4 2 / 1 2 1) >> 4
+    int[] GAUSSIAN_3X3 = {1, 2, 1, 2, 4, 2, 1, 2, 1};
+    int GAUSSIAN_3X3_SHIFT = 4;
+
+    /**
+     * dst = lut[canal] por canal (gamma, curvas). Se puede usar in-place.
+     */
+    void lookup(int[] src, int[] dst, int length, int[] lut);
+
+    /**
+     * Convolución 3x3 con pesos enteros: clamp((suma + redondeo) >> shift) por canal.
+     * Los bordes se copian de src (equivalente a EDGE_NO_OP). src y dst deben ser distintos.
+     */
+    void convolve3x3(int[] src, int[] dst, int width, int height, int[] weights, int shift);
+
+    /**
+     * Luminancia Rec. 601 entera: (77R + 150G + 29B) >> 8.
+     */
+    void toGray(int[] src, byte[] dst, int length);
+
+    String name();
+
+    /**
+     * Implementación instalada al arrancar; antes de eso (tests, utilidades sueltas), la escalar.
+     */
+    static PixelKernels get() {
+        PixelKernels kernels = Holder.installed;
+        return kernels != null ? kernels : Holder.SCALAR;
+    }
+
+    /**
+     * Elige la implementación (SIMD solo si simdEnabled y el módulo está cargado) y la deja como la de {@link #get()}.
+     */
+    static PixelKernels install(boolean simdEnabled) {
+        PixelKernels vector = simdEnabled ? vector() : null;
+        PixelKernels kernels = vector != null ? vector : Holder.SCALAR;
+        Holder.installed = kernels;
+        System.out.println("✅ Kernels de píxeles: " + kernels.name());
+        return kernels;
+    }
+
+    /**
+     * Implementación SIMD si el módulo está disponible, null en caso contrario.
+     */
+    static PixelKernels vector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (PixelKernels) Class.forName("com.example.RekoDemoBack.service.VectorPixelKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("⚠️ Vector API no utilizable, se usan kernels escalares: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Píxeles 0xRRGGBB de la imagen. Para un TYPE_INT_RGB sin desplazamiento devuelve su propio buffer
+     * (las escrituras modifican la imagen); en otro caso, una copia con getRGB en bloque.
+     */
+    static int[] rgbPixels(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB
+                && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt buffer
+                && buffer.getData().length == w * h) {
+            return buffer.getData();
+        }
+        return image.getRGB(0, 0, w, h, null, 0, w);
+    }
+
+    final class Holder {
+        static final PixelKernels SCALAR = new ScalarPixelKernels();
+        static volatile PixelKernels installed;
+
+        private Holder() {
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Motor que ejecuta las etapas de mejora (reescalado, contraste, enfoque) indicadas por un plan.
+ * Se elige con app.preprocessing.engine: java2d (por defecto) u opencv.
+ */
+public interface PreprocessingEngine {
+
+    /**
+     * Aplica el plan y devuelve una imagen sin alfa lista para codificar como JPEG.
+     * Puede modificar o devolver la misma instancia recibida. Las imágenes nuevas salen del
+     * {@link RasterPool}; el llamador devuelve al pool la entrada y el resultado cuando termina.
+     */
+    BufferedImage enhance(BufferedImage image, PreprocessingPlan plan);
+
+    String name();
+}
@@ -0,0 +1,48 @@
+package com.example.RekoDemoBack.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plan de preprocesamiento elegido para una imagen concreta, junto con las métricas que lo justifican.
+ *
+ * @param resample       si se reescala a {@code targetWidth}
+ * @param contrast       si se aplica la curva de contraste
+ * @param sharpen        si se aplica el enfoque 3x3
+ * @param denoise        si se aplica la mediana (reduceNoise)
+ * @param sourceWidth    ancho de la imagen decodificada
+ * @param targetWidth    ancho de salida
+ * @param dynamicRange   rango de luminancia entre percentiles 2 y 98 (0-255)
+ * @param blurScore      varianza del laplaciano sobre luminancia (más alto = más nítida)
+ */
+public record PreprocessingPlan(
+        boolean resample,
+        boolean contrast,
+        boolean sharpen,
+        boolean denoise,
+        int sourceWidth,
+        int targetWidth,
+        int dynamicRange,
+        double blurScore
+) {
+
+    /**
+     * Plan completo, equivalente al pipeline fijo anterior (reescalar + contraste + enfoque).
+     */
+    public static PreprocessingPlan full(int sourceWidth, int targetWidth, boolean denoise) {
+        return new PreprocessingPlan(true, true, true, denoise, sourceWidth, targetWidth, -1, -1);
+    }
+
+    public Map<String, Object> toMetadata() {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("resample", resample);
+        metadata.put("contrast", contrast);
+        metadata.put("sharpen", sharpen);
+        metadata.put("denoise", denoise);
+        metadata.put("sourceWidth", sourceWidth);
+        metadata.put("targetWidth", targetWidth);
+        metadata.put("dynamicRange", dynamicRange);
+        metadata.put("blurScore", Math.round(blurScore * 10) / 10.0);
+        return metadata;
+    }
+}
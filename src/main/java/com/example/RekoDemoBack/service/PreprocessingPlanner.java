@@ -0,0 +1,88 @@
+package com.example.RekoDemoBack.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Decide qué etapas del pipeline necesita cada imagen a partir de estadísticas baratas
+ * (tamaño, histograma de luminancia y varianza del laplaciano) medidas sobre una rejilla de muestras.
+ */
+final class PreprocessingPlanner {
+
+    // Muestras por eje: como máximo 128x128 puntos, independiente de la resolución
+    private static final int SAMPLES_PER_AXIS = 128;
+
+    // Tolerancia alrededor del ancho objetivo dentro de la cual no compensa reescalar
+    private static final double RESAMPLE_TOLERANCE = 0.15;
+
+    // Rango p2-p98 a partir del cual el contraste 1.2x/-20 solo recortaría luces y sombras
+    private static final int WIDE_DYNAMIC_RANGE = 200;
+
+    // Varianza del laplaciano por encima de la cual la imagen ya es nítida para OCR
+    private static final double SHARP_BLUR_SCORE = 300.0;
+
+    private PreprocessingPlanner() {
+    }
+
+    /**
+     * @param denoise si la mediana está habilitada; no se mide, se propaga al plan
+     */
+    static PreprocessingPlan plan(BufferedImage image, int targetWidth, boolean denoise) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        int stepX = Math.max(1, (width - 2) / SAMPLES_PER_AXIS);
+        int stepY = Math.max(1, (height - 2) / SAMPLES_PER_AXIS);
+
+        int[] histogram = new int[256];
+        long samples = 0;
+        double sum = 0;
+        double sumSq = 0;
+
+        for (int y = 1; y < height - 1; y += stepY) {
+            for (int x = 1; x < width - 1; x += stepX) {
+                int center = luminance(image.getRGB(x, y));
+                histogram[center]++;
+
+                // Laplaciano 4-vecinos a escala completa (vecinos a distancia 1, no a distancia de muestreo)
+                int laplacian = luminance(image.getRGB(x - 1, y)) + luminance(image.getRGB(x + 1, y))
+                        + luminance(image.getRGB(x, y - 1)) + luminance(image.getRGB(x, y + 1)) - 4 * center;
+                sum += laplacian;
+                sumSq += (double) laplacian * laplacian;
+                samples++;
+            }
+        }
+
+        if (samples == 0) {
+            // Imagen demasiado pequeña para medir: pipeline completo
+            return PreprocessingPlan.full(width, targetWidth, denoise);
+        }
+
+        double mean = sum / samples;
+        double blurScore = sumSq / samples - mean * mean;
+        int dynamicRange = percentile(histogram, samples, 0.98) - percentile(histogram, samples, 0.02);
+
+        boolean upscale = width < targetWidth * (1 - RESAMPLE_TOLERANCE);
+        boolean resample = upscale || width > targetWidth * (1 + RESAMPLE_TOLERANCE);
+        boolean contrast = dynamicRange < WIDE_DYNAMIC_RANGE;
+        // Al ampliar se pierde nitidez, así que el enfoque se mantiene aunque el original sea nítido
+        boolean sharpen = upscale || blurScore < SHARP_BLUR_SCORE;
+
+        return new PreprocessingPlan(resample, contrast, sharpen, denoise, width,
+                resample ? targetWidth : width, dynamicRange, blurScore);
+    }
+
+    private static int percentile(int[] histogram, long total, double fraction) {
+        long threshold = (long) Math.ceil(total * fraction);
+        long accumulated = 0;
+        for (int v = 0; v < 256; v++) {
+            accumulated += histogram[v];
+            if (accumulated >= threshold) return v;
+        }
+        return 255;
+    }
+
+    private static int luminance(int rgb) {
+        // Rec. 601 en enteros: (77R + 150G + 29B) / 256
+        return (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de rasters reutilizables (BufferedImage e int[]/byte[] de trabajo) indexado por dimensiones y tipo.
+ * Semántica lease/release: quien pide un buffer lo devuelve cuando ya no lo referencia nadie.
+ * El contenido de un buffer reutilizado NO está limpio; los consumidores lo sobrescriben por completo.
+ *
+ * Acotado por bytes totales y por buffers por forma; lo que no cabe se deja al GC.
+ */
+@Service
+public class RasterPool {
+
+    // Tipos "pseudo-imagen" para los arrays sueltos (width = longitud, height = 1)
+    private static final int INT_ARRAY = -1;
+    private static final int BYTE_ARRAY = -2;
+
+    private record Key(int width, int height, int type) {
+    }
+
+    private static final class Bucket {
+        final ConcurrentLinkedDeque<Object> free = new ConcurrentLinkedDeque<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    private final ConcurrentHashMap<Key, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final int maxPerShape;
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public record Stats(long leases, long reused, long allocated, long released, long dropped,
+                        long pooledBytes, long maxBytes) {
+        public double reuseRate() {
+            return leases == 0 ? 0.0 : (double) reused / leases;
+        }
+    }
+
+    public RasterPool(@Value("${app.raster-pool.enabled:true}") boolean enabled,
+                      @Value("${app.raster-pool.max-bytes:67108864}") long maxBytes,
+                      @Value("${app.raster-pool.max-per-shape:4}") int maxPerShape) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.maxPerShape = Math.max(1, maxPerShape);
+    }
+
+    /**
+     * Imagen de w x h del tipo pedido. Solo se reutilizan TYPE_INT_RGB, TYPE_3BYTE_BGR y TYPE_BYTE_GRAY;
+     * para el resto se crea una nueva sin más.
+     */
+    public BufferedImage leaseImage(int width, int height, int type) {
+        leases.incrementAndGet();
+        if (enabled && isPoolable(type)) {
+            Object pooled = poll(new Key(width, height, type));
+            if (pooled != null) {
+                return (BufferedImage) pooled;
+            }
+        }
+        return new BufferedImage(width, height, type);
+    }
+
+    public int[] leaseInts(int length) {
+        leases.incrementAndGet();
+        Object pooled = enabled ? poll(new Key(length, 1, INT_ARRAY)) : null;
+        return pooled != null ? (int[]) pooled : new int[length];
+    }
+
+    public byte[] leaseBytes(int length) {
+        leases.incrementAndGet();
+        Object pooled = enabled ? poll(new Key(length, 1, BYTE_ARRAY)) : null;
+        return pooled != null ? (byte[]) pooled : new byte[length];
+    }
+
+    /**
+     * Devuelve una imagen al pool. Ignora null, subimágenes (comparten raster con su padre) y tipos no reutilizables.
+     */
+    public void release(BufferedImage image) {
+        if (!enabled || image == null || !isPoolable(image.getType()) || image.getRaster().getParent() != null) {
+            return;
+        }
+        offer(new Key(image.getWidth(), image.getHeight(), image.getType()), image, imageBytes(image));
+    }
+
+    public void release(int[] array) {
+        if (enabled && array != null) {
+            offer(new Key(array.length, 1, INT_ARRAY), array, 4L * array.length);
+        }
+    }
+
+    public void release(byte[] array) {
+        if (enabled && array != null) {
+            offer(new Key(array.length, 1, BYTE_ARRAY), array, array.length);
+        }
+    }
+
+    public Stats stats() {
+        long totalLeases = leases.get();
+        long totalReused = reused.get();
+        return new Stats(totalLeases, totalReused, totalLeases - totalReused, released.get(), dropped.get(),
+                pooledBytes.get(), maxBytes);
+    }
+
+    private Object poll(Key key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            return null;
+        }
+        Object pooled = bucket.free.pollFirst();
+        if (pooled != null) {
+            bucket.size.decrementAndGet();
+            pooledBytes.addAndGet(-bytesOf(key));
+            reused.incrementAndGet();
+        }
+        return pooled;
+    }
+
+    private void offer(Key key, Object buffer, long bytes) {
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+        // Un doble release entregaría el mismo buffer a dos peticiones; con pocos buffers por forma, contains es barato
+        if (bucket.size.incrementAndGet() > maxPerShape || containsIdentity(bucket, buffer)) {
+            bucket.size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        if (pooledBytes.addAndGet(bytes) > maxBytes) {
+            pooledBytes.addAndGet(-bytes);
+            bucket.size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        // LIFO: el último devuelto es el que más probablemente sigue en caché de CPU
+        bucket.free.offerFirst(buffer);
+        released.incrementAndGet();
+    }
+
+    private static boolean containsIdentity(Bucket bucket, Object buffer) {
+        for (Object pooled : bucket.free) {
+            if (pooled == buffer) return true;
+        }
+        return false;
+    }
+
+    private static boolean isPoolable(int type) {
+        return type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    private static long bytesOf(Key key) {
+        return switch (key.type()) {
+            case INT_ARRAY, BufferedImage.TYPE_INT_RGB -> 4L * key.width() * key.height();
+            case BufferedImage.TYPE_3BYTE_BGR -> 3L * key.width() * key.height();
+            default -> (long) key.width() * key.height();
+        };
+    }
+
+    private static long imageBytes(BufferedImage image) {
+        return bytesOf(new Key(image.getWidth(), image.getHeight(), image.getType()));
+    }
+}
@@ -14,19 +14,40 @@ import software.amazon.awssdk.services.rekognition.model.*;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class RekognitionLivenessService {
 
     private final RekognitionClient rekClient;
 
+    private final JpegEncoderService jpegEncoder;
+
+    // Cajas de rostro obtenidas con DetectFaces, por sesión de liveness (solo para referencias sin boundingBox)
+    private static final long FACE_BOX_CACHE_WEIGHT = 64;
+    private final WTinyLfuCache<String, BoundingBox> faceBoxCache;
+    private final long faceBoxTtlMs;
+
+    // Origen de la caja usada en cada recorte carnet
+    private final AtomicLong boxesFromReference = new AtomicLong();
+    private final AtomicLong boxesFromCache = new AtomicLong();
+    private final AtomicLong detectFacesCalls = new AtomicLong();
+
+    public record PassportBoxStats(long fromReference, long fromCache, long detectFacesCalls) {
+    }
+
     public RekognitionLivenessService(
             @Value("${aws.access-key-id}") String awsAccessKeyId,
             @Value("${aws.secret-access-key}") String awsSecretAccessKey,
-            @Value("${aws.region}") String awsRegion
+            @Value("${aws.region}") String awsRegion,
+            @Value("${app.liveness.face-box-cache.max-entries:4096}") int faceBoxCacheEntries,
+            @Value("${app.liveness.face-box-cache.ttl-seconds:900}") long faceBoxTtlSeconds,
+            JpegEncoderService jpegEncoder
     ) {
+        this.jpegEncoder = jpegEncoder;
+        this.faceBoxCache = new WTinyLfuCache<>(faceBoxCacheEntries * FACE_BOX_CACHE_WEIGHT, faceBoxCacheEntries, 1000);
+        this.faceBoxTtlMs = faceBoxTtlSeconds * 1000;
         AwsBasicCredentials credentials = AwsBasicCredentials.create(
                 awsAccessKeyId,
                 awsSecretAccessKey
@@ -55,62 +76,104 @@ public class RekognitionLivenessService {
      * Procesa una imagen para que tenga dimensiones y encuadre tipo carnet (3:4)
      */
     public byte[] processToPassportSize(byte[] imageBytes) {
-        try {
-            // 1. Detectar el rostro para obtener las coordenadas
-            SdkBytes sdkBytes = SdkBytes.fromByteArray(imageBytes);
-            DetectFacesRequest detectRequest = DetectFacesRequest.builder()
-                    .image(Image.builder().bytes(sdkBytes).build())
-                    .build();
-            DetectFacesResponse detectResponse = rekClient.detectFaces(detectRequest);
-
-            if (detectResponse.faceDetails().isEmpty()) return imageBytes;
+        return processToPassportSize(imageBytes, null, null);
+    }
 
-            // Tomamos el primer rostro detectado
-            FaceDetail face = detectResponse.faceDetails().get(0);
-            BoundingBox box = face.boundingBox();
+    /**
+     * Igual que {@link #processToPassportSize(byte[])} pero usando el boundingBox que ya trae la imagen
+     * de referencia de la sesión de liveness. Solo si no viene se llama a DetectFaces, y su resultado se
+     * cachea por sesión para que las siguientes consultas de /results no repitan la llamada.
+     */
+    public byte[] processToPassportSize(byte[] imageBytes, BoundingBox referenceBox, String sessionId) {
+        try {
+            // 1. Coordenadas del rostro: las de la sesión, las cacheadas o (último recurso) DetectFaces
+            BoundingBox box = faceBox(imageBytes, referenceBox, sessionId);
+            if (box == null) return imageBytes;
 
             // 2. Cargar la imagen original en memoria
             BufferedImage original = ImageIO.read(new ByteArrayInputStream(imageBytes));
-            int width = original.getWidth();
-            int height = original.getHeight();
+            if (original == null) return imageBytes;
+
+            // 3-5. Recorte tipo carnet y codificación
+            return jpegEncoder.encode(cropToPassport(original, box), JpegEncoderService.Profile.FACE_CROP);
+
+        } catch (IOException | RuntimeException e) {
+            return imageBytes; // Si algo falla, devolvemos la original para no romper el flujo
+        }
+    }
+
+    private BoundingBox faceBox(byte[] imageBytes, BoundingBox referenceBox, String sessionId) {
+        if (isUsable(referenceBox)) {
+            boxesFromReference.incrementAndGet();
+            return referenceBox;
+        }
+        if (sessionId != null) {
+            BoundingBox cached = faceBoxCache.get(sessionId);
+            if (cached != null) {
+                boxesFromCache.incrementAndGet();
+                return cached;
+            }
+        }
+
+        System.out.println("🔎 Referencia sin boundingBox, se llama a DetectFaces"
+                + (sessionId != null ? " (sesión " + sessionId + ")" : ""));
+        detectFacesCalls.incrementAndGet();
+        SdkBytes sdkBytes = SdkBytes.fromByteArray(imageBytes);
+        DetectFacesRequest detectRequest = DetectFacesRequest.builder()
+                .image(Image.builder().bytes(sdkBytes).build())
+                .build();
+        DetectFacesResponse detectResponse = rekClient.detectFaces(detectRequest);
+
+        if (detectResponse.faceDetails().isEmpty()) return null;
+
+        // Tomamos el primer rostro detectado
+        BoundingBox box = detectResponse.faceDetails().get(0).boundingBox();
+        if (sessionId != null && isUsable(box)) {
+            faceBoxCache.put(sessionId, box, FACE_BOX_CACHE_WEIGHT, faceBoxTtlMs);
+        }
+        return box;
+    }
+
+    private static boolean isUsable(BoundingBox box) {
+        return box != null && box.width() != null && box.height() != null && box.left() != null && box.top() != null
+                && box.width() > 0 && box.height() > 0;
+    }
 
-            // 3. Calcular el área de recorte (Passport Padding)
-            // Queremos que el rostro ocupe un 50-60% de la imagen, con espacio arriba
-            int faceWidth = Math.round(box.width() * width);
-            int faceHeight = Math.round(box.height() * height);
+    public PassportBoxStats getPassportBoxStats() {
+        return new PassportBoxStats(boxesFromReference.get(), boxesFromCache.get(), detectFacesCalls.get());
+    }
 
-            // Definimos el ancho del recorte basado en el rostro + margen lateral
-            int cropWidth = (int) (faceWidth * 2.0);
-            int cropHeight = (int) (cropWidth * 1.33); // Proporción 3:4
+    private static BufferedImage cropToPassport(BufferedImage original, BoundingBox box) {
+        int width = original.getWidth();
+        int height = original.getHeight();
 
-            // Calculamos el centro del rostro para posicionar el recorte
-            int centerX = Math.round((box.left() + box.width() / 2) * width);
-            int centerY = Math.round((box.top() + box.height() / 2) * height);
+        // 3. Calcular el área de recorte (Passport Padding)
+        // Queremos que el rostro ocupe un 50-60% de la imagen, con espacio arriba
+        int faceWidth = Math.round(box.width() * width);
 
-            // Coordenadas del punto superior izquierdo del recorte
-            int left = Math.max(0, centerX - (cropWidth / 2));
-            int top = Math.max(0, centerY - (int)(cropHeight * 0.40)); // Margen superior para la cabeza
+        // Definimos el ancho del recorte basado en el rostro + margen lateral
+        int cropWidth = (int) (faceWidth * 2.0);
+        int cropHeight = (int) (cropWidth * 1.33); // Proporción 3:4
 
-            // Ajustar si el recorte excede los límites de la imagen original
-            if (left + cropWidth > width) left = width - cropWidth;
-            if (top + cropHeight > height) top = height - cropHeight;
+        // Calculamos el centro del rostro para posicionar el recorte
+        int centerX = Math.round((box.left() + box.width() / 2) * width);
+        int centerY = Math.round((box.top() + box.height() / 2) * height);
 
-            // Verificación final de seguridad para evitar subimage negativa
-            left = Math.max(0, left);
-            top = Math.max(0, top);
-            cropWidth = Math.min(cropWidth, width - left);
-            cropHeight = Math.min(cropHeight, height - top);
+        // Coordenadas del punto superior izquierdo del recorte
+        int left = Math.max(0, centerX - (cropWidth / 2));
+        int top = Math.max(0, centerY - (int)(cropHeight * 0.40)); // Margen superior para la cabeza
 
-            // 4. Realizar el recorte
-            BufferedImage cropped = original.getSubimage(left, top, cropWidth, cropHeight);
+        // Ajustar si el recorte excede los límites de la imagen original
+        if (left + cropWidth > width) left = width - cropWidth;
+        if (top + cropHeight > height) top = height - cropHeight;
 
-            // 5. Convertir a bytes de nuevo
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(cropped, "jpg", baos);
-            return baos.toByteArray();
+        // Verificación final de seguridad para evitar subimage negativa
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        cropWidth = Math.min(cropWidth, width - left);
+        cropHeight = Math.min(cropHeight, height - top);
 
-        } catch (IOException | RuntimeException e) {
-            return imageBytes; // Si algo falla, devolvemos la original para no romper el flujo
-        }
+        // 4. Realizar el recorte
+        return original.getSubimage(left, top, cropWidth, cropHeight);
     }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * OCR local para pruebas de carga sin credenciales de Google: devuelve el texto grabado en
+ * {@code <dir>/<proveedor>/<sha256>.txt} (SHA-256 de la imagen que recibe el OCR) y simula la latencia del
+ * proveedor real con una espera de latency-ms ± jitter-ms (normal, truncada en 0).
+ *
+ * Las grabaciones se generan con app.ocr.replay.record=true usando un proveedor real (ver {@link OcrService}),
+ * una carpeta por proveedor: cada nivel del OCR escalonado reproduce lo que leyó su propio proveedor.
+ * Si una imagen no tiene grabación se usa fallback-file; sin él, leída sola falla como fallaría el OCR
+ * y dentro de un lote devuelve "".
+ */
+@Service
+public class ReplayOcrProvider implements OcrProvider {
+
+    private final Path dir;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final Path fallbackFile;
+
+    public ReplayOcrProvider(@Value("${app.ocr.replay.dir:ocr-replay}") String dir,
+                             @Value("${app.ocr.replay.latency-ms:0}") long latencyMs,
+                             @Value("${app.ocr.replay.jitter-ms:0}") long jitterMs,
+                             @Value("${app.ocr.replay.fallback-file:}") String fallbackFile) {
+        this.dir = Path.of(dir);
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.fallbackFile = fallbackFile.isBlank() ? null : Path.of(fallbackFile);
+    }
+
+    @Override
+    public String extractText(MultipartFile image) throws IOException {
+        return extractText(image, getProviderName());
+    }
+
+    @Override
+    public List<String> extractTexts(List<MultipartFile> images) throws IOException {
+        return extractTexts(images, getProviderName());
+    }
+
+    /**
+     * Reproduce lo que el proveedor {@code recordedProvider} leyó de la imagen.
+     */
+    public String extractText(MultipartFile image, String recordedProvider) throws IOException {
+        simulateLatency();
+        String text = replay(image, recordedProvider);
+        if (text == null) {
+            throw new IOException("No hay OCR grabado para la imagen: "
+                    + recordingFor(recordedProvider, UploadIngestionService.sha256Hex(image)));
+        }
+        return text;
+    }
+
+    /**
+     * Lote de {@link #extractText(MultipartFile, String)}. Los textos vacíos no se graban, así que una imagen
+     * sin grabación (ni fallback) devuelve "" como la devolvió el proveedor real, sin tumbar el lote.
+     * La latencia simulada es una por lote, como una única petición al proveedor real.
+     */
+    public List<String> extractTexts(List<MultipartFile> images, String recordedProvider) throws IOException {
+        simulateLatency();
+        List<String> texts = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            String text = replay(image, recordedProvider);
+            texts.add(text != null ? text : "");
+        }
+        return texts;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "replay";
+    }
+
+    /**
+     * Archivo de grabación de una imagen leída por {@code provider} (mismo nombre para leer y para grabar).
+     */
+    Path recordingFor(String provider, String sha256Hex) {
+        return dir.resolve(provider.toLowerCase()).resolve(sha256Hex + ".txt");
+    }
+
+    // Grabación, fallback o null si no hay ninguno
+    private String replay(MultipartFile image, String recordedProvider) throws IOException {
+        Path recording = recordingFor(recordedProvider, UploadIngestionService.sha256Hex(image));
+        if (Files.isReadable(recording)) {
+            return Files.readString(recording, StandardCharsets.UTF_8);
+        }
+        if (fallbackFile != null) {
+            return Files.readString(fallbackFile, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private void simulateLatency() throws IOException {
+        if (latencyMs <= 0 && jitterMs <= 0) {
+            return;
+        }
+        long delay = Math.max(0, Math.round(latencyMs + ThreadLocalRandom.current().nextGaussian() * jitterMs));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("OCR simulado interrumpido", e);
+        }
+    }
+}
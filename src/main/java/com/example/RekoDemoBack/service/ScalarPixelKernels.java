@@ -0,0 +1,83 @@
+package com.example.RekoDemoBack.service;
+
+/**
+ * Implementación escalar de referencia; también resuelve las colas que no llenan un vector SIMD.
+ */
+final class ScalarPixelKernels implements PixelKernels {
+
+    @Override
+    public void lookup(int[] src, int[] dst, int length, int[] lut) {
+        lookup(src, dst, 0, length, lut);
+    }
+
+    static void lookup(int[] src, int[] dst, int from, int to, int[] lut) {
+        for (int i = from; i < to; i++) {
+            int rgb = src[i];
+            dst[i] = (lut[(rgb >> 16) & 0xFF] << 16) | (lut[(rgb >> 8) & 0xFF] << 8) | lut[rgb & 0xFF];
+        }
+    }
+
+    @Override
+    public void convolve3x3(int[] src, int[] dst, int width, int height, int[] weights, int shift) {
+        copyBorders(src, dst, width, height);
+        for (int y = 1; y < height - 1; y++) {
+            convolveRow(src, dst, width, y, 1, width - 1, weights, shift);
+        }
+    }
+
+    static void copyBorders(int[] src, int[] dst, int width, int height) {
+        if (height <= 2 || width <= 2) {
+            System.arraycopy(src, 0, dst, 0, width * height);
+            return;
+        }
+        System.arraycopy(src, 0, dst, 0, width);
+        System.arraycopy(src, (height - 1) * width, dst, (height - 1) * width, width);
+        for (int y = 1; y < height - 1; y++) {
+            dst[y * width] = src[y * width];
+            dst[y * width + width - 1] = src[y * width + width - 1];
+        }
+    }
+
+    static void convolveRow(int[] src, int[] dst, int width, int y, int fromX, int toX, int[] weights, int shift) {
+        int round = shift > 0 ? 1 << (shift - 1) : 0;
+        for (int x = fromX; x < toX; x++) {
+            int r = 0, g = 0, b = 0;
+            int k = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                int row = (y + dy) * width + x;
+                for (int dx = -1; dx <= 1; dx++, k++) {
+                    int weight = weights[k];
+                    if (weight == 0) continue;
+                    int rgb = src[row + dx];
+                    r += ((rgb >> 16) & 0xFF) * weight;
+                    g += ((rgb >> 8) & 0xFF) * weight;
+                    b += (rgb & 0xFF) * weight;
+                }
+            }
+            dst[y * width + x] = (clamp((r + round) >> shift) << 16)
+                    | (clamp((g + round) >> shift) << 8)
+                    | clamp((b + round) >> shift);
+        }
+    }
+
+    @Override
+    public void toGray(int[] src, byte[] dst, int length) {
+        toGray(src, dst, 0, length);
+    }
+
+    static void toGray(int[] src, byte[] dst, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int rgb = src[i];
+            dst[i] = (byte) ((77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "escalar";
+    }
+
+    static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.RekoDemoBack.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OCR escalonado del DNI: empieza por la pasada más barata (por defecto solo DOCUMENT_TEXT_DETECTION),
+ * parsea y solo vuelve a leer, con el siguiente nivel, las caras de las que aún faltan campos requeridos
+ * (o no llegan a la confianza mínima). El texto de cada nivel se suma al de los anteriores, así
+ * "vision-document" + "vision-text" equivale al OCR mejorado sin pagar dos veces DOCUMENT_TEXT_DETECTION.
+ *
+ * Con app.ocr.provider todos los niveles se resuelven a ese proveedor y queda uno solo; con replay
+ * cada nivel reproduce la grabación de su propio proveedor.
+ */
+@Service
+public class TieredOcrService {
+
+    // Campos que solo salen del anverso; el resto (número, nombres, sexo) sale de la MRZ del reverso
+    private static final Set<String> FRONT_FIELDS = Set.of("fechaNacimiento", "fechaEmision", "fechaVencimiento");
+
+    private final OcrService ocrService;
+    private final DniParserService dniParserService;
+    private final List<String> tiers;
+    private final List<String> requiredFields;
+    private final double minConfidence;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong unsatisfied = new AtomicLong();
+    private final Map<String, AtomicLong> satisfiedByTier = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> imagesByTier = new ConcurrentHashMap<>();
+
+    public TieredOcrService(OcrService ocrService, DniParserService dniParserService,
+                            @Value("${app.ocr.tiered.enabled:true}") boolean enabled,
+                            @Value("${app.ocr.tiered.tiers:vision-document,vision-text,documentai}") String tiers,
+                            @Value("${app.ocr.tiered.required-fields:numeroDni,apellidos,nombres,sexo,fechaNacimiento}") String requiredFields,
+                            @Value("${app.ocr.tiered.min-confidence:0.6}") double minConfidence) {
+        this.ocrService = ocrService;
+        this.dniParserService = dniParserService;
+        // Desactivado: una sola pasada con el OCR mejorado, como antes
+        this.tiers = enabled ? split(tiers) : List.of("vision");
+        this.requiredFields = split(requiredFields);
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Resultado del OCR escalonado: textos finales, parseo con confianza por campo, nivel que satisfizo
+     * los campos requeridos (null si ninguno lo hizo y se devuelve lo mejor obtenido) y niveles ejecutados.
+     */
+    public record Result(String frontText, String backText, DniParserService.ParseReport report,
+                         String tier, List<String> tiersRun, List<String> missing) {
+
+        public Map<String, Object> toMetadata() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            report.fields().forEach((field, info) -> fields.put(field, Map.of(
+                    "source", info.source(),
+                    "confidence", info.confidence()
+            )));
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("tier", tier != null ? tier : "none");
+            metadata.put("tiersRun", tiersRun);
+            metadata.put("missing", missing);
+            metadata.put("fields", fields);
+            return metadata;
+        }
+    }
+
+    public record Stats(long requests, long unsatisfied, Map<String, Long> satisfiedByTier,
+                        Map<String, Long> imagesByTier) {
+
+        public double averageImagesPerDni() {
+            long images = imagesByTier.values().stream().mapToLong(Long::longValue).sum();
+            return requests == 0 ? 0.0 : (double) images / requests;
+        }
+    }
+
+    /**
+     * OCR de anverso y reverso escalando nivel a nivel hasta tener los campos requeridos.
+     * Una cara que un nivel devuelve sin texto se vuelve a pedir en el siguiente; falla si ningún nivel
+     * devuelve texto o si no se obtiene un número de DNI válido.
+     */
+    Result extract(MultipartFile front, MultipartFile back) throws IOException {
+        requests.incrementAndGet();
+        MultipartFile[] images = {front, back};
+        String[] texts = {"", ""};
+        boolean[] pending = {true, true};
+        List<String> tiersRun = new ArrayList<>();
+        DniParserService.ParseReport report = null;
+        List<String> missing = requiredFields;
+        String satisfiedBy = null;
+        Exception lastError = null;
+
+        for (String tier : plan()) {
+            List<MultipartFile> batch = new ArrayList<>();
+            List<Integer> sides = new ArrayList<>();
+            for (int side = 0; side < images.length; side++) {
+                if (pending[side]) {
+                    batch.add(images[side]);
+                    sides.add(side);
+                }
+            }
+            tiersRun.add(tier);
+            System.out.println("🪜 OCR nivel '" + tier + "': " + batch.size() + " imágenes");
+
+            // Se cuentan las imágenes enviadas aunque el nivel falle: el proveedor las cobra igual
+            imagesByTier.computeIfAbsent(tier, key -> new AtomicLong()).addAndGet(batch.size());
+            List<String> extracted;
+            try {
+                extracted = ocrService.extractTexts(batch, tier);
+            } catch (IOException | RuntimeException e) {
+                // Un nivel que falla no corta el escalado: el siguiente lee las mismas caras
+                System.err.println("⚠️ OCR nivel '" + tier + "' falló: " + e.getMessage());
+                lastError = e;
+                continue;
+            }
+            // Una cara sin texto sigue pendiente (solo ella) para el siguiente nivel; la otra no se pierde
+            boolean[] empty = new boolean[images.length];
+            for (int i = 0; i < sides.size(); i++) {
+                int side = sides.get(i);
+                String text = extracted.get(i);
+                if (text == null || text.isEmpty()) {
+                    System.out.println("🪜 OCR nivel '" + tier + "': " + (side == 0 ? "anverso" : "reverso") + " sin texto");
+                    empty[side] = true;
+                    continue;
+                }
+                texts[side] = texts[side].isEmpty() ? text : texts[side] + "\n---\n" + text;
+            }
+            if (texts[0].isEmpty() && texts[1].isEmpty()) {
+                continue;
+            }
+
+            report = dniParserService.parseWithReport(texts[0], texts[1]);
+            missing = report.missing(requiredFields, minConfidence);
+            if (missing.isEmpty()) {
+                satisfiedBy = tier;
+                break;
+            }
+            System.out.println("🪜 Faltan tras '" + tier + "': " + missing);
+
+            boolean frontNeeded = false;
+            boolean backNeeded = false;
+            for (String field : missing) {
+                if (FRONT_FIELDS.contains(field)) {
+                    frontNeeded = true;
+                } else {
+                    backNeeded = true;
+                    // Sin MRZ legible, número y nombres solo pueden salir del anverso
+                    frontNeeded |= !report.hasMrz();
+                }
+            }
+            pending[0] = frontNeeded || empty[0];
+            pending[1] = backNeeded || empty[1];
+        }
+
+        if (report == null) {
+            throw new IOException("Ningún nivel de OCR devolvió texto", lastError);
+        }
+        if (satisfiedBy != null) {
+            satisfiedByTier.computeIfAbsent(satisfiedBy, key -> new AtomicLong()).incrementAndGet();
+        } else {
+            unsatisfied.incrementAndGet();
+        }
+        if (report.data().numeroDni() == null) {
+            throw new RuntimeException("No se pudo extraer un número de DNI válido");
+        }
+        return new Result(texts[0], texts[1], report, satisfiedBy, tiersRun, missing);
+    }
+
+    public Stats stats() {
+        Map<String, Long> satisfied = new LinkedHashMap<>();
+        Map<String, Long> images = new LinkedHashMap<>();
+        for (String tier : plan()) {
+            satisfied.put(tier, satisfiedByTier.getOrDefault(tier, new AtomicLong()).get());
+            images.put(tier, imagesByTier.getOrDefault(tier, new AtomicLong()).get());
+        }
+        return new Stats(requests.get(), unsatisfied.get(), satisfied, images);
+    }
+
+    private List<String> plan() {
+        return tiers.stream()
+                .map(tier -> ocrService.replays(tier) ? tier : ocrService.resolve(tier))
+                .distinct()
+                .toList();
+    }
+
+    private static List<String> split(String csv) {
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.RekoDemoBack.service;
+
+/**
+ * Curva de tono de 8 bits como tabla de 256 entradas (la misma para los tres canales).
+ * Gamma, contraste y niveles se precalculan una vez: aplicarlos cuesta un lookup por canal
+ * en vez de una pasada en coma flotante por píxel.
+ *
+ * Cada curva cuantiza a 8 bits igual que la operación suelta que reemplaza (RescaleOp, pow),
+ * así que el resultado es exactamente el mismo.
+ */
+final class ToneCurve {
+
+    private static final ToneCurve IDENTITY = new ToneCurve(identityTable());
+
+    private final int[] table;
+
+    private ToneCurve(int[] table) {
+        this.table = table;
+    }
+
+    static ToneCurve identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * v' = pow(v / 255, gamma) * 255 (truncado).
+     */
+    static ToneCurve gamma(double gamma) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = clamp((int) (Math.pow(v / 255.0, gamma) * 255.0));
+        }
+        return new ToneCurve(table);
+    }
+
+    /**
+     * v' = v * scale + offset, como RescaleOp(scale, offset) por canal.
+     */
+    static ToneCurve linear(float scale, float offset) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = clamp((int) (v * scale + offset));
+        }
+        return new ToneCurve(table);
+    }
+
+    /**
+     * Niveles: lleva [black, white] a [0, 255] y satura fuera del rango.
+     */
+    static ToneCurve levels(int black, int white) {
+        if (white <= black) {
+            throw new IllegalArgumentException("Niveles inválidos: " + black + ".." + white);
+        }
+        int range = white - black;
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = clamp((v - black) * 255 / range);
+        }
+        return new ToneCurve(table);
+    }
+
+    /**
+     * Tabla por canal (copia) para los kernels que reciben el LUT directamente.
+     */
+    int[] table() {
+        return table.clone();
+    }
+
+    /**
+     * Aplica la curva in-place sobre píxeles 0xRRGGBB (con los kernels SIMD si están disponibles).
+     */
+    void apply(int[] rgb, int length) {
+        apply(rgb, rgb, length);
+    }
+
+    void apply(int[] src, int[] dst, int length) {
+        PixelKernels.get().lookup(src, dst, length, table);
+    }
+
+    /**
+     * Aplica la curva in-place sobre luminancia de 8 bits.
+     */
+    void apply(byte[] gray, int length) {
+        byte[] bytes = toBytes();
+        for (int i = 0; i < length; i++) {
+            gray[i] = bytes[gray[i] & 0xFF];
+        }
+    }
+
+    private byte[] toBytes() {
+        byte[] bytes = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            bytes[v] = (byte) table[v];
+        }
+        return bytes;
+    }
+
+    private static int[] identityTable() {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = v;
+        }
+        return table;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
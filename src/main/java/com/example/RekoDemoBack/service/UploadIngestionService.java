@@ -0,0 +1,105 @@
+package com.example.RekoDemoBack.service;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Capa de ingesta: lee cada upload una única vez, calculando el SHA-256 en streaming,
+ * y devuelve un {@link IngestedUpload} que el resto del pipeline comparte.
+ */
+@Service
+public class UploadIngestionService {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Ingresa el archivo. Es idempotente: si ya fue ingerido, se devuelve la misma instancia.
+     */
+    public IngestedUpload ingest(MultipartFile file) throws IOException {
+        if (file instanceof IngestedUpload ingested) {
+            return ingested;
+        }
+
+        MessageDigest sha256 = newSha256();
+
+        // Pre-dimensionado con el tamaño declarado para evitar los crecimientos por duplicación
+        long declaredSize = file.getSize();
+        byte[] content = new byte[(int) Math.max(0, Math.min(declaredSize, Integer.MAX_VALUE - 8))];
+        int length = 0;
+
+        try (InputStream in = file.getInputStream()) {
+            while (true) {
+                if (length == content.length) {
+                    // El tamaño declarado no era fiable: crecer solo si todavía quedan datos
+                    int next = in.read();
+                    if (next < 0) break;
+                    content = Arrays.copyOf(content, Math.max(CHUNK_SIZE, content.length * 2));
+                    content[length] = (byte) next;
+                    sha256.update((byte) next);
+                    length++;
+                    continue;
+                }
+
+                int n = in.read(content, length, Math.min(CHUNK_SIZE, content.length - length));
+                if (n < 0) break;
+                sha256.update(content, length, n);
+                length += n;
+            }
+        }
+
+        if (length != content.length) {
+            content = Arrays.copyOf(content, length);
+        }
+
+        return new IngestedUpload(content, file.getName(), file.getOriginalFilename(), file.getContentType(),
+                HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    /**
+     * Convierte un archivo a ByteString para las APIs de Google. Si el archivo fue ingerido,
+     * se envuelve el buffer compartido sin copiarlo (el contenido es inmutable).
+     */
+    public static ByteString toByteString(MultipartFile file) throws IOException {
+        if (file instanceof IngestedUpload ingested) {
+            return UnsafeByteOperations.unsafeWrap(ingested.asReadOnlyBuffer());
+        }
+        try (InputStream in = file.getInputStream()) {
+            return ByteString.readFrom(in);
+        }
+    }
+
+    /**
+     * SHA-256 en hexadecimal del contenido: el ya calculado si el archivo fue ingerido, si no en streaming.
+     */
+    public static String sha256Hex(MultipartFile file) throws IOException {
+        if (file instanceof IngestedUpload ingested) {
+            return ingested.sha256Hex();
+        }
+        MessageDigest sha256 = newSha256();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream in = file.getInputStream()) {
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                sha256.update(chunk, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.RekoDemoBack.service;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels SIMD con jdk.incubator.vector. Solo se instancia desde {@link PixelKernels#vector()}
+ * cuando el módulo está presente; las colas se delegan en {@link ScalarPixelKernels}.
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void lookup(int[] src, int[] dst, int length, int[] lut) {
+        int lanes = INTS.length();
+        int[] indices = new int[lanes];
+        int upper = INTS.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += lanes) {
+            IntVector rgb = IntVector.fromArray(INTS, src, i);
+            rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF).intoArray(indices, 0);
+            IntVector r = IntVector.fromArray(INTS, lut, 0, indices, 0);
+            rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF).intoArray(indices, 0);
+            IntVector g = IntVector.fromArray(INTS, lut, 0, indices, 0);
+            rgb.and(0xFF).intoArray(indices, 0);
+            IntVector b = IntVector.fromArray(INTS, lut, 0, indices, 0);
+            pack(r, g, b).intoArray(dst, i);
+        }
+        ScalarPixelKernels.lookup(src, dst, i, length, lut);
+    }
+
+    @Override
+    public void convolve3x3(int[] src, int[] dst, int width, int height, int[] weights, int shift) {
+        ScalarPixelKernels.copyBorders(src, dst, width, height);
+        int lanes = INTS.length();
+        int round = shift > 0 ? 1 << (shift - 1) : 0;
+
+        for (int y = 1; y < height - 1; y++) {
+            int x = 1;
+            for (; x + lanes <= width - 1; x += lanes) {
+                IntVector r = IntVector.zero(INTS);
+                IntVector g = IntVector.zero(INTS);
+                IntVector b = IntVector.zero(INTS);
+                int k = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    int row = (y + dy) * width + x;
+                    for (int dx = -1; dx <= 1; dx++, k++) {
+                        int weight = weights[k];
+                        if (weight == 0) continue;
+                        IntVector rgb = IntVector.fromArray(INTS, src, row + dx);
+                        r = r.add(rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF).mul(weight));
+                        g = g.add(rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(weight));
+                        b = b.add(rgb.and(0xFF).mul(weight));
+                    }
+                }
+                r = clamp(r.add(round).lanewise(VectorOperators.ASHR, shift));
+                g = clamp(g.add(round).lanewise(VectorOperators.ASHR, shift));
+                b = clamp(b.add(round).lanewise(VectorOperators.ASHR, shift));
+                pack(r, g, b).intoArray(dst, y * width + x);
+            }
+            ScalarPixelKernels.convolveRow(src, dst, width, y, x, width - 1, weights, shift);
+        }
+    }
+
+    @Override
+    public void toGray(int[] src, byte[] dst, int length) {
+        int lanes = INTS.length();
+        // El estrechamiento int->byte depende del ancho de vector; se hace con un buffer de un vector
+        int[] luminance = new int[lanes];
+        int upper = INTS.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += lanes) {
+            IntVector rgb = IntVector.fromArray(INTS, src, i);
+            rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF).mul(77)
+                    .add(rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(150))
+                    .add(rgb.and(0xFF).mul(29))
+                    .lanewise(VectorOperators.LSHR, 8)
+                    .intoArray(luminance, 0);
+            for (int lane = 0; lane < lanes; lane++) {
+                dst[i + lane] = (byte) luminance[lane];
+            }
+        }
+        ScalarPixelKernels.toGray(src, dst, i, length);
+    }
+
+    @Override
+    public String name() {
+        return "Vector API (" + INTS.length() + " lanes int)";
+    }
+
+    private static IntVector clamp(IntVector value) {
+        return value.max(0).min(255);
+    }
+
+    private static IntVector pack(IntVector r, IntVector g, IntVector b) {
+        return r.lanewise(VectorOperators.LSHL, 16).or(g.lanewise(VectorOperators.LSHL, 8)).or(b);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.RekoDemoBack.service;
+
+import com.google.cloud.vision.v1.Feature;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pasada barata de Cloud Vision: solo DOCUMENT_TEXT_DETECTION (primer nivel del OCR escalonado).
+ */
+@Service
+public class VisionDocumentOcrProvider extends VisionFeatureOcrProvider {
+
+    public VisionDocumentOcrProvider(VisionService visionService) {
+        super(visionService, "vision-document", Feature.Type.DOCUMENT_TEXT_DETECTION);
+    }
+}
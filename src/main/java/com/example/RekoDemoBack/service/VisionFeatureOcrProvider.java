@@ -0,0 +1,49 @@
+package com.example.RekoDemoBack.service;
+
+import com.google.cloud.vision.v1.Feature;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base de los proveedores de Cloud Vision: cada uno fija las features que pide por imagen y los
+ * lotes van en un único batchAnnotateImages. En un lote, una imagen sin texto devuelve "" sin tumbar
+ * las demás; leída sola, es un error del proveedor.
+ */
+abstract class VisionFeatureOcrProvider implements OcrProvider {
+
+    private final VisionService visionService;
+    private final String providerName;
+    private final List<Feature.Type> features;
+
+    VisionFeatureOcrProvider(VisionService visionService, String providerName, Feature.Type... features) {
+        this.visionService = visionService;
+        this.providerName = providerName;
+        this.features = List.of(features);
+    }
+
+    @Override
+    public String extractText(MultipartFile image) throws IOException {
+        String text = extractTexts(List.of(image)).get(0);
+        if (text.isEmpty()) {
+            throw new RuntimeException("No se pudo extraer texto de la imagen");
+        }
+        return text;
+    }
+
+    @Override
+    public List<String> extractTexts(List<MultipartFile> images) throws IOException {
+        List<VisionService.OcrImage> batch = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            batch.add(new VisionService.OcrImage(image, features));
+        }
+        return visionService.extractTextBatch(batch);
+    }
+
+    @Override
+    public String getProviderName() {
+        return providerName;
+    }
+}
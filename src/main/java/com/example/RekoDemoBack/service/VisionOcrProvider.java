@@ -0,0 +1,15 @@
+package com.example.RekoDemoBack.service;
+
+import com.google.cloud.vision.v1.Feature;
+import org.springframework.stereotype.Service;
+
+/**
+ * OCR con Cloud Vision (DOCUMENT_TEXT_DETECTION + TEXT_DETECTION); los lotes van en un único batchAnnotateImages.
+ */
+@Service
+public class VisionOcrProvider extends VisionFeatureOcrProvider {
+
+    public VisionOcrProvider(VisionService visionService) {
+        super(visionService, "vision", Feature.Type.DOCUMENT_TEXT_DETECTION, Feature.Type.TEXT_DETECTION);
+    }
+}
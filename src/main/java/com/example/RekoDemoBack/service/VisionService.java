@@ -1,6 +1,7 @@
 package com.example.RekoDemoBack.service;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -12,13 +13,38 @@ import com.google.cloud.vision.v1.AnnotateImageResponse;
 import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
 import com.google.cloud.vision.v1.Feature;
 import com.google.cloud.vision.v1.Image;
-import com.google.cloud.vision.v1.ImageAnnotatorClient;
 import com.google.cloud.vision.v1.TextAnnotation;
 import com.google.protobuf.ByteString;
 
 @Service
 public class VisionService {
 
+    // Límite de AnnotateImageRequest por llamada síncrona de Cloud Vision
+    private static final int MAX_REQUESTS_PER_BATCH = 16;
+
+    private static final String STORE_PROVIDER = "vision";
+
+    /**
+     * Imagen de un lote de OCR con las features que se le aplican (una AnnotateImageRequest por feature).
+     */
+    public record OcrImage(MultipartFile file, List<Feature.Type> features) {
+
+        /**
+         * Mismas features que {@link #extractTextFromImageEnhanced}.
+         */
+        public static OcrImage enhanced(MultipartFile file) {
+            return new OcrImage(file, List.of(Feature.Type.DOCUMENT_TEXT_DETECTION, Feature.Type.TEXT_DETECTION));
+        }
+    }
+
+    private final OcrClientManager ocrClients;
+    private final OcrResultStore resultStore;
+
+    public VisionService(OcrClientManager ocrClients, OcrResultStore resultStore) {
+        this.ocrClients = ocrClients;
+        this.resultStore = resultStore;
+    }
+
     /**
      * Llama a la API de Cloud Vision y extrae el texto completo de una imagen.
      */
@@ -39,11 +65,10 @@ public class VisionService {
             throw new IllegalArgumentException("Formato de imagen no válido. Usa JPEG o PNG.");
         }
 
-        // Usamos try-with-resources para cerrar el cliente automáticamente
-        try (ImageAnnotatorClient visionClient = ImageAnnotatorClient.create()) {
+        // Cliente compartido del proceso (OcrClientManager): sin canal ni handshake TLS por llamada
+        try {
 
-            byte[] bytes = imageFile.getBytes();
-            ByteString byteString = ByteString.copyFrom(bytes);
+            ByteString byteString = UploadIngestionService.toByteString(imageFile);
             Image image = Image.newBuilder().setContent(byteString).build();
 
             // Usamos DOCUMENT_TEXT_DETECTION por ser más preciso para OCR
@@ -56,9 +81,9 @@ public class VisionService {
                     .setImage(image)
                     .build();
 
-            BatchAnnotateImagesResponse response = visionClient.batchAnnotateImages(
+            BatchAnnotateImagesResponse response = ocrClients.vision(client -> client.batchAnnotateImages(
                     Collections.singletonList(request)
-            );
+            ));
 
             AnnotateImageResponse firstResponse = response.getResponses(0);
 
@@ -91,43 +116,74 @@ public class VisionService {
                 contentType.equals("image/jpg")
         );
     }
+    /**
+     * OCR "mejorado": DOCUMENT_TEXT_DETECTION y TEXT_DETECTION sobre la misma imagen, textos unidos con "---".
+     */
     public String extractTextFromImageEnhanced(MultipartFile imageFile) throws IOException {
-        try (ImageAnnotatorClient visionClient = ImageAnnotatorClient.create()) {
-
-            byte[] bytes = imageFile.getBytes();
-            ByteString byteString = ByteString.copyFrom(bytes);
-            Image image = Image.newBuilder().setContent(byteString).build();
-
-            // Configurar características mejoradas para documentos
-            Feature textFeature = Feature.newBuilder()
-                    .setType(Feature.Type.DOCUMENT_TEXT_DETECTION)
-                    .build();
-
-            Feature denseTextFeature = Feature.newBuilder()
-                    .setType(Feature.Type.TEXT_DETECTION)
-                    .build();
-
-            // Crear requests para ambos tipos de detección
-            AnnotateImageRequest documentRequest = AnnotateImageRequest.newBuilder()
-                    .addFeatures(textFeature)
-                    .setImage(image)
-                    .build();
-
-            AnnotateImageRequest denseTextRequest = AnnotateImageRequest.newBuilder()
-                    .addFeatures(denseTextFeature)
-                    .setImage(image)
-                    .build();
+        String finalText = extractTextBatch(List.of(OcrImage.enhanced(imageFile))).get(0);
+        if (finalText.isEmpty()) {
+            throw new RuntimeException("No se pudo extraer texto de la imagen");
+        }
+        return finalText;
+    }
 
-            // Procesar con ambas estrategias
-            List<AnnotateImageRequest> requests = List.of(documentRequest, denseTextRequest);
-            BatchAnnotateImagesResponse response = visionClient.batchAnnotateImages(requests);
+    /**
+     * OCR de varias imágenes en el mínimo de RPCs: una AnnotateImageRequest por (imagen, feature), todas en
+     * el mismo BatchAnnotateImagesRequest (troceado en lotes de {@value #MAX_REQUESTS_PER_BATCH}, el límite
+     * de la API síncrona). Devuelve un texto por imagen, en el orden de entrada; los textos de las distintas
+     * features de una imagen se unen con "---" y una imagen sin texto devuelve "".
+     * Las imágenes ya vistas con las mismas features salen del {@link OcrResultStore} sin llamar a Vision;
+     * solo se guardan las imágenes cuyas respuestas llegaron todas sin error.
+     */
+    public List<String> extractTextBatch(List<OcrImage> images) throws IOException {
+        String[] texts = new String[images.size()];
+        String[] storeKeys = new String[images.size()];
+        List<AnnotateImageRequest> requests = new ArrayList<>();
+        int[] owner = new int[images.stream().mapToInt(i -> i.features().size()).sum()];
+        int fromStore = 0;
+        try {
+            for (int index = 0; index < images.size(); index++) {
+                OcrImage ocrImage = images.get(index);
+                storeKeys[index] = OcrResultStore.key(UploadIngestionService.sha256Hex(ocrImage.file()),
+                        STORE_PROVIDER, featureKey(ocrImage.features()));
+                texts[index] = resultStore.get(storeKeys[index]);
+                if (texts[index] != null) {
+                    fromStore++;
+                    continue;
+                }
+                // El mismo ByteString (sin copia) para todas las features de la imagen
+                Image image = Image.newBuilder()
+                        .setContent(UploadIngestionService.toByteString(ocrImage.file()))
+                        .build();
+                for (Feature.Type type : ocrImage.features()) {
+                    owner[requests.size()] = index;
+                    requests.add(AnnotateImageRequest.newBuilder()
+                            .addFeatures(Feature.newBuilder().setType(type).build())
+                            .setImage(image)
+                            .build());
+                }
+            }
 
-            // Combinar resultados
-            StringBuilder combinedText = new StringBuilder();
+            List<AnnotateImageResponse> responses = new ArrayList<>(requests.size());
+            for (int from = 0; from < requests.size(); from += MAX_REQUESTS_PER_BATCH) {
+                List<AnnotateImageRequest> chunk =
+                        requests.subList(from, Math.min(requests.size(), from + MAX_REQUESTS_PER_BATCH));
+                BatchAnnotateImagesResponse response = ocrClients.vision(client -> client.batchAnnotateImages(chunk));
+                responses.addAll(response.getResponsesList());
+            }
 
-            for (AnnotateImageResponse singleResponse : response.getResponsesList()) {
+            // Combinar resultados por imagen de origen
+            StringBuilder[] combined = new StringBuilder[images.size()];
+            for (int i = 0; i < combined.length; i++) {
+                combined[i] = new StringBuilder();
+            }
+            // Un texto parcial (alguna feature falló) se devuelve, pero no se guarda: el siguiente intento reintenta
+            boolean[] failed = new boolean[images.size()];
+            for (int r = 0; r < responses.size(); r++) {
+                AnnotateImageResponse singleResponse = responses.get(r);
                 if (singleResponse.hasError()) {
                     System.err.println("Error en OCR: " + singleResponse.getError().getMessage());
+                    failed[owner[r]] = true;
                     continue;
                 }
 
@@ -135,22 +191,37 @@ public class VisionService {
                 if (annotation != null && annotation.getText() != null) {
                     String text = annotation.getText().trim();
                     if (!text.isEmpty()) {
+                        StringBuilder combinedText = combined[owner[r]];
                         if (combinedText.length() > 0) combinedText.append("\n---\n");
                         combinedText.append(text);
                     }
                 }
             }
 
-            String finalText = combinedText.toString();
-            if (finalText.isEmpty()) {
-                throw new RuntimeException("No se pudo extraer texto de la imagen");
+            for (int i = 0; i < texts.length; i++) {
+                if (texts[i] == null) {
+                    texts[i] = combined[i].toString();
+                    if (!failed[i]) {
+                        resultStore.put(storeKeys[i], texts[i]);
+                    }
+                }
             }
-
-            System.out.println("📝 Texto extraído (longitud: " + finalText.length() + " caracteres)");
-            return finalText;
+            System.out.println("📝 OCR por lotes: " + images.size() + " imágenes (" + fromStore
+                    + " del almacén), " + requests.size() + " peticiones en "
+                    + ((requests.size() + MAX_REQUESTS_PER_BATCH - 1) / MAX_REQUESTS_PER_BATCH) + " RPC");
+            return List.of(texts);
 
         } catch (IOException e) {
             throw new IOException("Error al procesar la imagen: " + e.getMessage(), e);
         }
     }
+
+    private static String featureKey(List<Feature.Type> features) {
+        StringBuilder key = new StringBuilder();
+        for (Feature.Type type : features) {
+            if (key.length() > 0) key.append('+');
+            key.append(type.name());
+        }
+        return key.toString();
+    }
 }
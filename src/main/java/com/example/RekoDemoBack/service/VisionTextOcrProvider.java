@@ -0,0 +1,16 @@
+package com.example.RekoDemoBack.service;
+
+import com.google.cloud.vision.v1.Feature;
+import org.springframework.stereotype.Service;
+
+/**
+ * Solo TEXT_DETECTION: sumado a una pasada "vision-document" equivale al OCR mejorado de {@link VisionOcrProvider}
+ * sin volver a pagar DOCUMENT_TEXT_DETECTION.
+ */
+@Service
+public class VisionTextOcrProvider extends VisionFeatureOcrProvider {
+
+    public VisionTextOcrProvider(VisionService visionService) {
+        super(visionService, "vision-text", Feature.Type.TEXT_DETECTION);
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.RekoDemoBack.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché acotada por bytes con política W-TinyLFU:
+ * - Ventana LRU pequeña (1%) que absorbe ráfagas de entradas nuevas.
+ * - Región principal SLRU (probation + protected) protegida por un filtro de admisión:
+ *   un candidato que sale de la ventana solo entra si su frecuencia estimada supera a la de la víctima.
+ * - TTL por entrada con una rueda de tiempo (expiración amortizada, sin escaneos O(n)).
+ *
+ * Thread-safe mediante un único lock; las operaciones son O(1) amortizado.
+ * El listener de eliminación se invoca bajo ese lock cada vez que un valor deja la caché (desalojo,
+ * expiración, invalidación, reemplazo o rechazo), para liberar los recursos que tenga asociados.
+ */
+public class WTinyLfuCache<K, V> {
+
+    private static final double WINDOW_PERCENT = 0.01;
+    private static final double PROTECTED_PERCENT = 0.80;
+    private static final int WHEEL_BUCKETS = 64;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    public record Stats(long hits, long misses, long evictions, long expirations, long rejections,
+                        long entries, long weightedBytes, long maxBytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final BiConsumer<K, V> removalListener;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final Deque<K, V> window = new Deque<>();
+    private final Deque<K, V> probation = new Deque<>();
+    private final Deque<K, V> protectedQueue = new Deque<>();
+    private final FrequencySketch sketch;
+
+    @SuppressWarnings("unchecked")
+    private final Node<K, V>[] wheel = new Node[WHEEL_BUCKETS];
+    private long currentTick;
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long rejections;
+
+    public WTinyLfuCache(long maxBytes, int expectedEntries, long tickMillis) {
+        this(maxBytes, expectedEntries, tickMillis, (key, value) -> { });
+    }
+
+    public WTinyLfuCache(long maxBytes, int expectedEntries, long tickMillis, BiConsumer<K, V> removalListener) {
+        this(maxBytes, expectedEntries, tickMillis, System::currentTimeMillis, removalListener);
+    }
+
+    WTinyLfuCache(long maxBytes, int expectedEntries, long tickMillis, LongSupplier clock) {
+        this(maxBytes, expectedEntries, tickMillis, clock, (key, value) -> { });
+    }
+
+    WTinyLfuCache(long maxBytes, int expectedEntries, long tickMillis, LongSupplier clock,
+                  BiConsumer<K, V> removalListener) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes debe ser positivo");
+        this.maxWeight = maxBytes;
+        this.windowMaxWeight = Math.max(1, (long) (maxBytes * WINDOW_PERCENT));
+        this.protectedMaxWeight = (long) ((maxBytes - windowMaxWeight) * PROTECTED_PERCENT);
+        this.tickMillis = Math.max(1, tickMillis);
+        this.clock = clock;
+        this.removalListener = removalListener;
+        this.sketch = new FrequencySketch(Math.max(16, expectedEntries));
+        this.currentTick = clock.getAsLong() / this.tickMillis;
+    }
+
+    public synchronized V get(K key) {
+        long now = clock.getAsLong();
+        expireEntries(now);
+        sketch.increment(key.hashCode());
+
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (node.expiresAt <= now) {
+            removeNode(node);
+            expirations++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Inserta o reemplaza una entrada. Si el peso supera el presupuesto total, se rechaza.
+     */
+    public synchronized void put(K key, V value, long weight, long ttlMillis) {
+        long now = clock.getAsLong();
+        expireEntries(now);
+        sketch.increment(key.hashCode());
+
+        if (weight > maxWeight) {
+            rejections++;
+            removalListener.accept(key, value);
+            return;
+        }
+
+        Node<K, V> existing = data.get(key);
+        if (existing != null) {
+            unschedule(existing);
+            addWeight(existing.queue, weight - existing.weight);
+            V previous = existing.value;
+            existing.value = value;
+            existing.weight = weight;
+            existing.expiresAt = now + ttlMillis;
+            schedule(existing);
+            onAccess(existing);
+            if (previous != value) {
+                removalListener.accept(key, previous);
+            }
+        } else {
+            Node<K, V> node = new Node<>(key, value, weight, now + ttlMillis);
+            data.put(key, node);
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowWeight += weight;
+            schedule(node);
+        }
+
+        List<Node<K, V>> candidates = evictFromWindow();
+        evictFromMain(candidates);
+    }
+
+    public synchronized void invalidate(K key) {
+        Node<K, V> node = data.get(key);
+        if (node != null) removeNode(node);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, expirations, rejections, data.size(),
+                windowWeight + probationWeight + protectedWeight, maxWeight);
+    }
+
+    /**
+     * Región en la que está la clave ("window", "probation" o "protected"), o null si no está. Para tests.
+     */
+    synchronized String regionOf(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) return null;
+        return switch (node.queue) {
+            case WINDOW -> "window";
+            case PROBATION -> "probation";
+            default -> "protected";
+        };
+    }
+
+    // ========== POLÍTICA ==========
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                // Segundo acceso: promoción a la zona protegida
+                probation.remove(node);
+                probationWeight -= node.weight;
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.weight;
+                demoteProtectedOverflow();
+            }
+            default -> protectedQueue.moveToLast(node);
+        }
+    }
+
+    private void demoteProtectedOverflow() {
+        while (protectedWeight > protectedMaxWeight && protectedQueue.head != null) {
+            Node<K, V> demoted = protectedQueue.pollFirst();
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+            probationWeight += demoted.weight;
+        }
+    }
+
+    /**
+     * Mueve a probation las entradas que desbordan la ventana; quedan como candidatas a admisión.
+     */
+    private List<Node<K, V>> evictFromWindow() {
+        List<Node<K, V>> candidates = new ArrayList<>(1);
+        while (windowWeight > windowMaxWeight && window.head != null) {
+            Node<K, V> node = window.pollFirst();
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            probationWeight += node.weight;
+            candidates.add(node);
+        }
+        return candidates;
+    }
+
+    private void evictFromMain(List<Node<K, V>> candidates) {
+        for (Node<K, V> candidate : candidates) {
+            while (totalWeight() > maxWeight && data.containsKey(candidate.key)) {
+                Node<K, V> victim = selectVictim(candidate);
+                if (victim == null) break;
+
+                if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                    evict(victim);
+                } else {
+                    evict(candidate);
+                }
+            }
+        }
+
+        // Sin candidatas (p.ej. reemplazo más pesado): desalojar en orden LRU probation -> protected -> ventana
+        while (totalWeight() > maxWeight) {
+            Node<K, V> victim = probation.head != null ? probation.head
+                    : protectedQueue.head != null ? protectedQueue.head
+                    : window.head;
+            if (victim == null) break;
+            evict(victim);
+        }
+    }
+
+    private Node<K, V> selectVictim(Node<K, V> candidate) {
+        Node<K, V> victim = probation.head;
+        if (victim == candidate) victim = candidate.next;
+        if (victim == null) victim = protectedQueue.head;
+        return victim;
+    }
+
+    private void evict(Node<K, V> node) {
+        removeNode(node);
+        evictions++;
+    }
+
+    private void removeNode(Node<K, V> node) {
+        data.remove(node.key);
+        unschedule(node);
+        switch (node.queue) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            default -> protectedQueue.remove(node);
+        }
+        addWeight(node.queue, -node.weight);
+        removalListener.accept(node.key, node.value);
+    }
+
+    private void addWeight(int queue, long delta) {
+        switch (queue) {
+            case WINDOW -> windowWeight += delta;
+            case PROBATION -> probationWeight += delta;
+            default -> protectedWeight += delta;
+        }
+    }
+
+    private long totalWeight() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    // ========== RUEDA DE EXPIRACIÓN ==========
+
+    private void schedule(Node<K, V> node) {
+        int bucket = (int) ((node.expiresAt / tickMillis) & (WHEEL_BUCKETS - 1));
+        node.bucket = bucket;
+        node.wheelPrev = null;
+        node.wheelNext = wheel[bucket];
+        if (wheel[bucket] != null) wheel[bucket].wheelPrev = node;
+        wheel[bucket] = node;
+    }
+
+    private void unschedule(Node<K, V> node) {
+        if (node.wheelPrev != null) {
+            node.wheelPrev.wheelNext = node.wheelNext;
+        } else if (wheel[node.bucket] == node) {
+            wheel[node.bucket] = node.wheelNext;
+        }
+        if (node.wheelNext != null) node.wheelNext.wheelPrev = node.wheelPrev;
+        node.wheelPrev = null;
+        node.wheelNext = null;
+    }
+
+    /**
+     * Avanza la rueda hasta el tick actual y expira solo los buckets recorridos.
+     * Las entradas con TTL mayor a una vuelta permanecen en su bucket hasta la vuelta correcta.
+     */
+    private void expireEntries(long now) {
+        long nowTick = now / tickMillis;
+        if (nowTick <= currentTick) return;
+
+        long steps = Math.min(nowTick - currentTick, WHEEL_BUCKETS);
+        for (long i = 1; i <= steps; i++) {
+            int bucket = (int) ((currentTick + i) & (WHEEL_BUCKETS - 1));
+            Node<K, V> node = wheel[bucket];
+            while (node != null) {
+                Node<K, V> next = node.wheelNext;
+                if (node.expiresAt <= now) {
+                    removeNode(node);
+                    expirations++;
+                }
+                node = next;
+            }
+        }
+        currentTick = nowTick;
+    }
+
+    // ========== ESTRUCTURAS INTERNAS ==========
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        long weight;
+        long expiresAt;
+        int queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+        int bucket;
+        Node<K, V> wheelPrev;
+        Node<K, V> wheelNext;
+
+        Node(K key, V value, long weight, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Lista doblemente enlazada intrusiva: head = LRU, tail = MRU.
+     */
+    private static final class Deque<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail != null) tail.next = node;
+            else head = node;
+            tail = node;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = head;
+            if (node != null) remove(node);
+            return node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev != null) node.prev.next = node.next;
+            else head = node.next;
+            if (node.next != null) node.next.prev = node.prev;
+            else tail = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (tail == node) return;
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    /**
+     * Count-Min Sketch de 4 filas con contadores saturados en 15.
+     * Cada 10 * ancho incrementos se dividen a la mitad (envejecimiento) para olvidar la historia antigua.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97cb3127, 0xb7b7a4a9, 0x5f2ad3c1, 0x2c1b3c6d};
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries * 4) - 1) << 1;
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = indexOf(hash, row);
+                if (table[row][index] < 15) {
+                    table[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                min = Math.min(min, table[row][indexOf(hash, row)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
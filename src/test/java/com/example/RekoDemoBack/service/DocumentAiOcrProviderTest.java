@@ -0,0 +1,27 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DocumentAiOcrProviderTest {
+
+	@Test
+	void failedImageDoesNotAbortTheBatch() {
+		DocumentAiOcrProvider provider = new DocumentAiOcrProvider(file -> {
+			if (file.getName().equals("front")) {
+				throw new IOException("DEADLINE_EXCEEDED");
+			}
+			return "MRZ";
+		});
+
+		assertEquals(List.of("", "MRZ"), provider.extractTexts(List.of(image("front"), image("back"))));
+	}
+
+	private static IngestedUpload image(String name) {
+		return new IngestedUpload(name.getBytes(), name, name + ".jpg", "image/jpeg", name);
+	}
+}
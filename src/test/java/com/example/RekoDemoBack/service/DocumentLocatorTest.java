@@ -0,0 +1,155 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentLocatorTest {
+
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+	private static final int LOCATE_WIDTH = 400;
+
+	// Dos píxeles de la versión reducida, más el medio píxel del centro del borde
+	private static final double TOLERANCE = 6;
+
+	private static final int BACKGROUND = 0x303030;
+	private static final int CARD = 0xDCDCDC;
+
+	private final RasterPool pool = new RasterPool(true, 1 << 24, 4);
+
+	@Test
+	void locatesAxisAlignedCard() {
+		Point2D.Double[] corners = corners(100, 80, 700, 80, 700, 500, 100, 500);
+
+		DocumentLocator.Quad quad = DocumentLocator.locate(photo(corners), LOCATE_WIDTH, pool);
+
+		assertCorners(corners, quad);
+		assertNotNull(quad.asAxisAligned(WIDTH * 0.01));
+	}
+
+	@Test
+	void locatesRotatedCard() {
+		double angle = Math.toRadians(8);
+		Point2D.Double[] corners = new Point2D.Double[4];
+		double[][] offsets = {{-280, -180}, {280, -180}, {280, 180}, {-280, 180}};
+		for (int i = 0; i < 4; i++) {
+			double x = offsets[i][0];
+			double y = offsets[i][1];
+			corners[i] = new Point2D.Double(WIDTH / 2.0 + x * Math.cos(angle) - y * Math.sin(angle),
+					HEIGHT / 2.0 + x * Math.sin(angle) + y * Math.cos(angle));
+		}
+
+		DocumentLocator.Quad quad = DocumentLocator.locate(photo(corners), LOCATE_WIDTH, pool);
+
+		assertCorners(corners, quad);
+		assertNull(quad.asAxisAligned(WIDTH * 0.005));
+	}
+
+	@Test
+	void locatesKeystonedCard() {
+		// Lado superior más corto: cámara inclinada hacia delante
+		Point2D.Double[] corners = corners(130, 90, 670, 90, 710, 520, 90, 520);
+
+		DocumentLocator.Quad quad = DocumentLocator.locate(photo(corners), LOCATE_WIDTH, pool);
+
+		assertCorners(corners, quad);
+	}
+
+	@Test
+	void cardTouchingTheFrameUsesImageEdges() {
+		// Ocupa todo el ancho: izquierda y derecha no tienen borde y se sustituyen por los de la imagen
+		Point2D.Double[] corners = corners(0, 100, WIDTH - 1, 100, WIDTH - 1, 500, 0, 500);
+
+		DocumentLocator.Quad quad = DocumentLocator.locate(photo(corners), LOCATE_WIDTH, pool);
+
+		assertCorners(corners, quad);
+	}
+
+	@Test
+	void blankImageHasNoDocument() {
+		BufferedImage blank = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = blank.createGraphics();
+		g.setColor(new Color(CARD));
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.dispose();
+
+		assertNull(DocumentLocator.locate(blank, LOCATE_WIDTH, pool));
+	}
+
+	@Test
+	void homographyMapsOutputCornersOntoQuad() {
+		Point2D.Double[] corners = corners(130.5, 90.25, 670, 95, 710, 520, 90, 515.75);
+		DocumentLocator.Quad quad = new DocumentLocator.Quad(corners[0], corners[1], corners[2], corners[3]);
+		int w = quad.outputWidth();
+		int h = quad.outputHeight();
+
+		double[] m = DocumentLocator.homography(w, h, quad);
+
+		double[][] output = {{0, 0}, {w, 0}, {w, h}, {0, h}};
+		for (int i = 0; i < 4; i++) {
+			double x = output[i][0];
+			double y = output[i][1];
+			double z = m[6] * x + m[7] * y + m[8];
+			assertEquals(corners[i].x, (m[0] * x + m[1] * y + m[2]) / z, 1e-6, "x esquina " + i);
+			assertEquals(corners[i].y, (m[3] * x + m[4] * y + m[5]) / z, 1e-6, "y esquina " + i);
+		}
+	}
+
+	@Test
+	void perspectiveCropKeepsOnlyTheCard() {
+		Point2D.Double[] corners = corners(130, 90, 670, 90, 710, 520, 90, 520);
+		DocumentLocator.Quad quad = new DocumentLocator.Quad(corners[0], corners[1], corners[2], corners[3]);
+
+		BufferedImage card = DocumentLocator.crop(photo(corners), quad, pool);
+
+		assertEquals(quad.outputWidth(), card.getWidth());
+		assertEquals(quad.outputHeight(), card.getHeight());
+		// A 3px del borde del recorte ya no queda fondo
+		int w = card.getWidth();
+		int h = card.getHeight();
+		int[][] samples = {{3, 3}, {w - 4, 3}, {w - 4, h - 4}, {3, h - 4}, {w / 2, h / 2}};
+		for (int[] p : samples) {
+			assertEquals(CARD, card.getRGB(p[0], p[1]) & 0xFFFFFF, "píxel " + p[0] + "," + p[1]);
+		}
+	}
+
+	private static Point2D.Double[] corners(double... xy) {
+		Point2D.Double[] corners = new Point2D.Double[4];
+		for (int i = 0; i < 4; i++) {
+			corners[i] = new Point2D.Double(xy[2 * i], xy[2 * i + 1]);
+		}
+		return corners;
+	}
+
+	private static BufferedImage photo(Point2D.Double[] corners) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(BACKGROUND));
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		Polygon card = new Polygon();
+		for (Point2D.Double corner : corners) {
+			card.addPoint((int) Math.round(corner.x), (int) Math.round(corner.y));
+		}
+		g.setColor(new Color(CARD));
+		g.fillPolygon(card);
+		g.dispose();
+		return image;
+	}
+
+	private static void assertCorners(Point2D.Double[] expected, DocumentLocator.Quad quad) {
+		assertNotNull(quad);
+		Point2D.Double[] actual = {quad.topLeft(), quad.topRight(), quad.bottomRight(), quad.bottomLeft()};
+		for (int i = 0; i < 4; i++) {
+			double distance = expected[i].distance(actual[i]);
+			assertTrue(distance <= TOLERANCE, "esquina " + i + ": esperada " + expected[i] + ", obtenida " + actual[i]);
+		}
+	}
+}
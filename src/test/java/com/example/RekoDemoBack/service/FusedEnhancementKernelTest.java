@@ -0,0 +1,46 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class FusedEnhancementKernelTest {
+
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void setUp() {
+		pool = new ForkJoinPool(7);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void tiledOutputIsBitIdenticalToSerial() {
+		Random random = new Random(42);
+		int[] lut = FusedEnhancementKernel.contrastLut(1.2f, -20f);
+
+		for (int round = 0; round < 100; round++) {
+			int width = 1 + random.nextInt(64);
+			int height = 1 + random.nextInt(96);
+			int[] serial = new int[width * height];
+			for (int i = 0; i < serial.length; i++) {
+				serial[i] = random.nextInt(0x1000000);
+			}
+			int[] tiled = serial.clone();
+
+			FusedEnhancementKernel.apply(serial, width, height, lut);
+			FusedEnhancementKernel.applyTiled(tiled, width, height, lut, pool, 1 + random.nextInt(4));
+
+			assertArrayEquals(serial, tiled, "Diferencia en imagen " + width + "x" + height);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalFaceDetectorTest {
+
+	private static final double PORTRAIT_ASPECT = 500.0 / 630.0;
+
+	@Test
+	void portraitIsCenteredOnFaceWithHeadroom() {
+		Rectangle face = new Rectangle(400, 300, 100, 120);
+
+		Rectangle portrait = LocalFaceDetector.portraitAround(face, 1000, 1000);
+
+		// Alto 2.4 rostros, proporción carnet, centrado en x y 0.6 rostros sobre la frente
+		assertEquals(288, portrait.height);
+		assertEquals(229, portrait.width);
+		assertEquals(face.getCenterX(), portrait.getCenterX(), 1.0);
+		assertEquals(300 - 72, portrait.y);
+		assertTrue(portrait.contains(face));
+		assertEquals(PORTRAIT_ASPECT, (double) portrait.width / portrait.height, 0.01);
+	}
+
+	@Test
+	void portraitNearTheEdgesIsShiftedInsteadOfClipped() {
+		Rectangle topLeft = LocalFaceDetector.portraitAround(new Rectangle(10, 5, 100, 120), 1000, 800);
+		assertEquals(new Rectangle(0, 0, 229, 288), topLeft);
+
+		Rectangle bottomRight = LocalFaceDetector.portraitAround(new Rectangle(900, 700, 100, 100), 1000, 800);
+		assertEquals(240, bottomRight.height);
+		assertEquals(190, bottomRight.width);
+		assertEquals(1000, bottomRight.x + bottomRight.width);
+		assertEquals(800, bottomRight.y + bottomRight.height);
+	}
+
+	@Test
+	void portraitNeverExceedsTheImage() {
+		// Rostro que ocupa casi toda la zona de búsqueda: el encuadre se reduce hasta caber, sin deformarse
+		Rectangle portrait = LocalFaceDetector.portraitAround(new Rectangle(20, 40, 260, 300), 300, 400);
+
+		assertEquals(new Rectangle(0, 0, 300, 378), portrait);
+		assertEquals(PORTRAIT_ASPECT, (double) portrait.width / portrait.height, 0.01);
+	}
+}
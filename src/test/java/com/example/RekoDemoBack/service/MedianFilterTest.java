@@ -0,0 +1,77 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class MedianFilterTest {
+
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void matchesBruteForceMedianForSeveralRadii() {
+		Random random = new Random(5);
+		for (int round = 0; round < 60; round++) {
+			int width = 1 + random.nextInt(300);
+			int height = 1 + random.nextInt(40);
+			int radius = 1 + random.nextInt(3);
+			int[] src = new int[width * height];
+			boolean lowEntropy = random.nextBoolean();
+			for (int i = 0; i < src.length; i++) {
+				src[i] = lowEntropy ? random.nextInt(4) * 0x111111 : random.nextInt(0x1000000);
+			}
+
+			int[] expected = bruteForce(src, width, height, radius);
+			int[] serial = new int[src.length];
+			int[] tiled = new int[src.length];
+			MedianFilter.apply(src, serial, width, height, radius);
+			MedianFilter.applyTiled(src, tiled, width, height, radius, pool, 8);
+
+			assertArrayEquals(expected, serial, width + "x" + height + " r=" + radius);
+			assertArrayEquals(expected, tiled, width + "x" + height + " r=" + radius + " (tiles)");
+		}
+	}
+
+	private static int[] bruteForce(int[] src, int width, int height, int radius) {
+		int size = (2 * radius + 1) * (2 * radius + 1);
+		int[][] values = new int[3][size];
+		int[] dst = new int[src.length];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int k = 0;
+				for (int dy = -radius; dy <= radius; dy++) {
+					for (int dx = -radius; dx <= radius; dx++) {
+						int yy = Math.max(0, Math.min(height - 1, y + dy));
+						int xx = Math.max(0, Math.min(width - 1, x + dx));
+						int rgb = src[yy * width + xx];
+						values[0][k] = (rgb >> 16) & 0xFF;
+						values[1][k] = (rgb >> 8) & 0xFF;
+						values[2][k] = rgb & 0xFF;
+						k++;
+					}
+				}
+				for (int[] channel : values) {
+					Arrays.sort(channel);
+				}
+				dst[y * width + x] = (values[0][size / 2] << 16) | (values[1][size / 2] << 8) | values[2][size / 2];
+			}
+		}
+		return dst;
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MrzBandLocatorTest {
+
+	private static final int WIDTH = 856;
+	private static final int HEIGHT = 540;
+
+	private final RasterPool pool = new RasterPool(true, 1 << 24, 4);
+
+	@Test
+	void findsThreeLineBandAtTheBottom() {
+		BufferedImage card = blankCard();
+		Graphics2D g = card.createGraphics();
+		// Texto corto en la parte superior (domicilio, etiquetas): no es MRZ
+		drawTextLine(g, 40, 60, 300, 18, 1);
+		drawTextLine(g, 40, 100, 260, 18, 2);
+		// MRZ: tres líneas a casi todo el ancho
+		int[] mrzTops = {390, 430, 470};
+		for (int i = 0; i < mrzTops.length; i++) {
+			drawTextLine(g, 30, mrzTops[i], WIDTH - 60, 26, 10 + i);
+		}
+		g.dispose();
+
+		Rectangle band = MrzBandLocator.locate(card, 400, pool);
+
+		assertNotNull(band);
+		assertTrue(band.y <= mrzTops[0] && band.y >= mrzTops[0] - 30, "inicio " + band.y);
+		assertTrue(band.y + band.height >= mrzTops[2] + 26, "fin " + (band.y + band.height));
+		assertTrue(band.height < HEIGHT * 0.4, "alto " + band.height);
+		assertTrue(band.width == WIDTH);
+	}
+
+	@Test
+	void returnsNullWithoutDenseBand() {
+		BufferedImage card = blankCard();
+		Graphics2D g = card.createGraphics();
+		drawTextLine(g, 40, 60, 300, 18, 1);
+		drawTextLine(g, 40, 420, 240, 18, 3);
+		g.dispose();
+
+		assertNull(MrzBandLocator.locate(card, 400, pool));
+		assertNull(MrzBandLocator.locate(blankCard(), 400, pool));
+	}
+
+	private static BufferedImage blankCard() {
+		BufferedImage card = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = card.createGraphics();
+		g.setColor(new Color(215, 220, 225));
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.dispose();
+		return card;
+	}
+
+	/**
+	 * Línea de "caracteres" monoespaciados: cada celda lleva trazos verticales como los de OCR-B.
+	 */
+	private static void drawTextLine(Graphics2D g, int x, int y, int width, int height, long seed) {
+		Random random = new Random(seed);
+		g.setColor(new Color(30, 30, 35));
+		int cell = Math.max(8, height * 2 / 3);
+		for (int cx = x; cx + cell <= x + width; cx += cell) {
+			int strokes = 1 + random.nextInt(3);
+			for (int s = 0; s < strokes; s++) {
+				int sx = cx + 1 + random.nextInt(cell - 4);
+				g.fillRect(sx, y, 2, height);
+			}
+			if (random.nextBoolean()) {
+				g.fillRect(cx + 1, y + height / 2, cell - 3, 2);
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MrzTd1Test {
+
+	// Ejemplo de TD1 del documento ICAO 9303 parte 5
+	private static final String ICAO_SPECIMEN = """
+			I<UTOD231458907<<<<<<<<<<<<<<<
+			7408122F1204159UTO<<<<<<<<<<<6
+			ERIKSSON<<ANNA<MARIA<<<<<<<<<<
+			""";
+
+	@Test
+	void checkDigitsFollowIcaoWeights() {
+		assertEquals(7, MrzTd1.checkDigit("D23145890"));
+		assertEquals(2, MrzTd1.checkDigit("740812"));
+		assertEquals(9, MrzTd1.checkDigit("120415"));
+		assertEquals(-1, MrzTd1.checkDigit("12«45"));
+	}
+
+	@Test
+	void readsSpecimenWithValidChecks() {
+		MrzTd1.Td1 mrz = MrzTd1.find(ICAO_SPECIMEN);
+
+		assertTrue(mrz.checksValid());
+		assertEquals("D23145890", mrz.documentNumber());
+		assertEquals("ERIKSSON", mrz.surnames());
+		assertEquals("ANNA MARIA", mrz.givenNames());
+		assertEquals("F", mrz.sex());
+		assertEquals("1974-08-12", mrz.birthDate());
+		assertEquals("2012-04-15", mrz.expiryDate());
+		assertEquals("UTO", mrz.nationality());
+	}
+
+	@Test
+	void findsDniMrzInsideOcrNoiseWithLostFillers() {
+		String line1 = "I<PER72838997<" + MrzTd1.checkDigit("72838997<");
+		String line2Head = "060330" + MrzTd1.checkDigit("060330") + "M"
+				+ "280630" + MrzTd1.checkDigit("280630") + "PER" + "<".repeat(11);
+		String composite = (line1 + "<".repeat(15)).substring(5) + line2Head.substring(0, 7)
+				+ line2Head.substring(8, 15) + line2Head.substring(18, 29);
+		String text = "REPUBLICA DEL PERU\n" + line1 + "\n" + line2Head + MrzTd1.checkDigit(composite)
+				+ "\nALIAGA<AGUIRRE<<ETHAN<MATIAS\n---\nOTRO TEXTO";
+
+		MrzTd1.Td1 mrz = MrzTd1.find(text);
+
+		assertTrue(mrz.checksValid());
+		assertEquals("72838997", mrz.documentNumber());
+		assertEquals("ALIAGA AGUIRRE", mrz.surnames());
+		assertEquals("ETHAN MATIAS", mrz.givenNames());
+		assertEquals("M", mrz.sex());
+		assertEquals("2006-03-30", mrz.birthDate());
+	}
+
+	@Test
+	void singleMisreadBreaksChecks() {
+		// 2 -> Z en el número de documento
+		String misread = ICAO_SPECIMEN.replace("D23145890", "DZ3145890");
+		assertFalse(MrzTd1.find(misread).checksValid());
+
+		// Sin la línea 2 no hay MRZ
+		assertNull(MrzTd1.find("I<UTOD231458907<<<<<<<<<<<<<<<\nERIKSSON<<ANNA<MARIA"));
+	}
+}
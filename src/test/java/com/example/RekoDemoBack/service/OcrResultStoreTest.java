@@ -0,0 +1,84 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcrResultStoreTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void entriesSurviveReopenAndLastWriteWins() {
+		OcrResultStore store = open(1 << 20);
+		store.put("a:vision:TEXT", "primero");
+		store.put("b:vision:TEXT", "DNI 72838997");
+		store.put("a:vision:TEXT", "segundo");
+		store.close();
+
+		OcrResultStore reopened = open(1 << 20);
+		assertEquals("segundo", reopened.get("a:vision:TEXT"));
+		assertEquals("DNI 72838997", reopened.get("b:vision:TEXT"));
+		assertNull(reopened.get("c:vision:TEXT"));
+		assertEquals(2, reopened.stats().entries());
+		reopened.close();
+	}
+
+	@Test
+	void tornTailIsTruncatedOnReopen() throws IOException {
+		OcrResultStore store = open(1 << 20);
+		store.put("a:vision:TEXT", "completo");
+		store.put("b:vision:TEXT", "cortado a la mitad");
+		store.close();
+
+		Path file = dir.resolve("ocr-results.log");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+
+		OcrResultStore reopened = open(1 << 20);
+		assertEquals("completo", reopened.get("a:vision:TEXT"));
+		assertNull(reopened.get("b:vision:TEXT"));
+
+		// Tras truncar, los nuevos registros se anexan sobre un final limpio
+		reopened.put("c:vision:TEXT", "nuevo");
+		reopened.close();
+		OcrResultStore again = open(1 << 20);
+		assertEquals("nuevo", again.get("c:vision:TEXT"));
+		again.close();
+	}
+
+	@Test
+	void compactionKeepsNewestEntriesWithinBudget() throws IOException {
+		int maxBytes = 4096;
+		OcrResultStore store = open(maxBytes);
+		String text = "x".repeat(200);
+		for (int i = 0; i < 40; i++) {
+			store.put("k" + i + ":vision:TEXT", text + i);
+		}
+
+		assertTrue(store.stats().compactions() > 0);
+		assertTrue(Files.size(dir.resolve("ocr-results.log")) <= maxBytes);
+		assertEquals(text + 39, store.get("k39:vision:TEXT"));
+		assertNull(store.get("k0:vision:TEXT"));
+		store.close();
+
+		OcrResultStore reopened = open(maxBytes);
+		assertEquals(text + 39, reopened.get("k39:vision:TEXT"));
+		reopened.close();
+	}
+
+	private OcrResultStore open(long maxBytes) {
+		return new OcrResultStore(true, dir.toString(), 3600, maxBytes);
+	}
+}
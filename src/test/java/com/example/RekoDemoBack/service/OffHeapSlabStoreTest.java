@@ -0,0 +1,68 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapSlabStoreTest {
+
+	private static final int PAGE = 1024;
+
+	@Test
+	void cacheEvictionReturnsPagesImmediately() {
+		OffHeapSlabStore store = new OffHeapSlabStore(8 * PAGE, PAGE, 1, null);
+		AtomicLong now = new AtomicLong();
+		WTinyLfuCache<String, OffHeapSlabStore.Payload> cache =
+				new WTinyLfuCache<>(1_000_000, 16, 100, now::get, (key, payload) -> payload.release());
+
+		OffHeapSlabStore.Payload first = store.store(new byte[3 * PAGE]);
+		cache.put("a", first, first.length(), 1_000);
+		assertEquals(3 * PAGE, store.usedBytes());
+
+		cache.invalidate("a");
+		assertEquals(0, store.usedBytes());
+		assertFalse(first.retain());
+
+		// Expiración: las páginas vuelven sin esperar al GC
+		OffHeapSlabStore.Payload second = store.store(new byte[2 * PAGE]);
+		cache.put("b", second, second.length(), 1_000);
+		now.addAndGet(2_000);
+		assertNull(cache.get("b"));
+		assertEquals(0, store.usedBytes());
+	}
+
+	@Test
+	void openStreamKeepsPagesUntilClosed() throws IOException {
+		OffHeapSlabStore store = new OffHeapSlabStore(8 * PAGE, PAGE, 1, null);
+		byte[] content = new byte[2 * PAGE + 10];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		OffHeapSlabStore.Payload payload = store.store(content);
+
+		InputStream in = payload.openStream();
+		// La caché lo desaloja mientras alguien aún lee
+		payload.release();
+		assertEquals(3 * PAGE, store.usedBytes());
+		assertArrayEquals(content, in.readAllBytes());
+
+		in.close();
+		assertEquals(0, store.usedBytes());
+		assertThrows(IllegalStateException.class, payload::openStream);
+
+		// Un segundo release (o close) no libera páginas ajenas
+		OffHeapSlabStore.Payload other = store.store(new byte[PAGE]);
+		payload.release();
+		in.close();
+		assertEquals(PAGE, store.usedBytes());
+		assertArrayEquals(new byte[PAGE], other.toByteArray());
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PixelKernelsTest {
+
+	private static final PixelKernels SCALAR = new ScalarPixelKernels();
+
+	private static PixelKernels vector;
+
+	@BeforeAll
+	static void setUp() {
+		vector = PixelKernels.vector();
+	}
+
+	@Test
+	void lookupMatchesScalar() {
+		assumeTrue(vector != null, "jdk.incubator.vector no disponible");
+		Random random = new Random(11);
+		int[] lut = ToneCurve.gamma(0.9).table();
+		for (int round = 0; round < 50; round++) {
+			int[] src = randomPixels(random, 1 + random.nextInt(300));
+			int[] expected = new int[src.length];
+			int[] actual = src.clone();
+
+			SCALAR.lookup(src, expected, src.length, lut);
+			vector.lookup(actual, actual, actual.length, lut);
+
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	@Test
+	void convolveMatchesScalar() {
+		assumeTrue(vector != null, "jdk.incubator.vector no disponible");
+		Random random = new Random(13);
+		int[] sharpen = {0, -1, 0, -1, 5, -1, 0, -1, 0};
+		for (int round = 0; round < 50; round++) {
+			int width = 1 + random.nextInt(70);
+			int height = 1 + random.nextInt(40);
+			int[] src = randomPixels(random, width * height);
+			int[] expected = new int[src.length];
+			int[] actual = new int[src.length];
+
+			SCALAR.convolve3x3(src, expected, width, height, PixelKernels.GAUSSIAN_3X3, PixelKernels.GAUSSIAN_3X3_SHIFT);
+			vector.convolve3x3(src, actual, width, height, PixelKernels.GAUSSIAN_3X3, PixelKernels.GAUSSIAN_3X3_SHIFT);
+			assertArrayEquals(expected, actual, "gaussiano " + width + "x" + height);
+
+			SCALAR.convolve3x3(src, expected, width, height, sharpen, 0);
+			vector.convolve3x3(src, actual, width, height, sharpen, 0);
+			assertArrayEquals(expected, actual, "enfoque " + width + "x" + height);
+		}
+	}
+
+	@Test
+	void grayMatchesScalar() {
+		assumeTrue(vector != null, "jdk.incubator.vector no disponible");
+		Random random = new Random(17);
+		for (int round = 0; round < 50; round++) {
+			int width = 1 + random.nextInt(120);
+			int height = 1 + random.nextInt(20);
+			int[] src = randomPixels(random, width * height);
+			byte[] expectedGray = new byte[src.length];
+			byte[] actualGray = new byte[src.length];
+
+			SCALAR.toGray(src, expectedGray, src.length);
+			vector.toGray(src, actualGray, src.length);
+			assertArrayEquals(expectedGray, actualGray, width + "x" + height);
+		}
+	}
+
+	private static int[] randomPixels(Random random, int length) {
+		int[] pixels = new int[length];
+		for (int i = 0; i < length; i++) {
+			pixels[i] = random.nextInt(0x1000000);
+		}
+		return pixels;
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayOcrProviderTest {
+
+	private static final String SHA = "ab".repeat(32);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void eachProviderReplaysItsOwnRecording() throws IOException {
+		ReplayOcrProvider replay = new ReplayOcrProvider(dir.toString(), 0, 0, "");
+		write(replay.recordingFor("vision-document", SHA), "DOCUMENT");
+		write(replay.recordingFor("vision-text", SHA), "TEXT");
+
+		assertEquals(dir.resolve("vision-document").resolve(SHA + ".txt"), replay.recordingFor("Vision-Document", SHA));
+		assertEquals("DOCUMENT", replay.extractText(image(), "vision-document"));
+		assertEquals(List.of("TEXT", "TEXT"), replay.extractTexts(List.of(image(), image()), "vision-text"));
+
+		// Sin grabación de ese proveedor: leída sola falla como el OCR real, en un lote devuelve ""
+		assertThrows(IOException.class, () -> replay.extractText(image(), "documentai"));
+		assertEquals(List.of(""), replay.extractTexts(List.of(image()), "documentai"));
+	}
+
+	@Test
+	void missingRecordingUsesFallbackFile() throws IOException {
+		Path fallback = dir.resolve("fallback.txt");
+		write(fallback, "FALLBACK");
+		ReplayOcrProvider replay = new ReplayOcrProvider(dir.toString(), 0, 0, fallback.toString());
+
+		assertEquals("FALLBACK", replay.extractText(image(), "documentai"));
+	}
+
+	@Test
+	void batchPaysTheSimulatedLatencyOnce() throws IOException {
+		ReplayOcrProvider replay = new ReplayOcrProvider(dir.toString(), 150, 0, "");
+		write(replay.recordingFor("vision-text", SHA), "TEXT");
+
+		long start = System.nanoTime();
+		replay.extractTexts(List.of(image(), image(), image(), image()), "vision-text");
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		// Una petición por lote: cuatro imágenes no cuestan cuatro latencias
+		assertTrue(elapsedMs >= 150 && elapsedMs < 450, "lote de 4 imágenes en " + elapsedMs + " ms");
+	}
+
+	private static IngestedUpload image() {
+		return new IngestedUpload(new byte[]{1, 2, 3}, "file", "dni.jpg", "image/jpeg", SHA);
+	}
+
+	private static void write(Path file, String text) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, text);
+	}
+}
@@ -0,0 +1,126 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TieredOcrServiceTest {
+
+	private static final String FRONT = """
+			REPUBLICA DEL PERU
+			DNI 72838997
+			SEXO M
+			FECHA DE NACIMIENTO 30 03 2006
+			FECHA DE EMISION 29 05 2023""";
+	private static final String MRZ = "I<PER72838997<5\nALIAGA<AGUIRRE<<ETHAN<MATIAS";
+
+	private final IngestedUpload front = image("front");
+	private final IngestedUpload back = image("back");
+
+	@Test
+	void emptySideIsRereadAloneByTheNextTier() throws IOException {
+		FakeProvider document = new FakeProvider("vision-document", Map.of("back", MRZ));
+		FakeProvider text = new FakeProvider("vision-text", Map.of("front", FRONT));
+		TieredOcrService tiered = tiered("numeroDni,apellidos,nombres,fechaNacimiento", document, text);
+
+		TieredOcrService.Result result = tiered.extract(front, back);
+
+		// El anverso vacío no tumba el reverso; solo el anverso sube de nivel
+		assertEquals(List.of(List.of("front", "back")), document.requested);
+		assertEquals(List.of(List.of("front")), text.requested);
+		assertEquals("vision-text", result.tier());
+		assertEquals("72838997", result.report().data().numeroDni());
+		assertEquals(FRONT, result.frontText());
+		assertEquals(MRZ, result.backText());
+	}
+
+	@Test
+	void emptySideDoesNotFailTheBatch() throws IOException {
+		FakeProvider document = new FakeProvider("vision-document", Map.of("front", FRONT));
+		FakeProvider text = new FakeProvider("vision-text", Map.of());
+		TieredOcrService tiered = tiered("numeroDni,sexo,fechaNacimiento", document, text);
+
+		TieredOcrService.Result result = tiered.extract(front, back);
+
+		assertEquals("vision-document", result.tier());
+		assertEquals("", result.backText());
+		assertEquals(List.of(), text.requested);
+	}
+
+	@Test
+	void defaultedSexStaysPendingForTheNextTier() throws IOException {
+		// Sin marca de sexo el parser rellena el valor por defecto, que no basta para darlo por leído
+		FakeProvider document = new FakeProvider("vision-document",
+				Map.of("front", "REPUBLICA DEL PERU\nDNI 72838997\nFECHA DE NACIMIENTO 30 03 2006"));
+		FakeProvider text = new FakeProvider("vision-text", Map.of("front", FRONT));
+		TieredOcrService tiered = tiered("numeroDni,sexo", document, text);
+
+		TieredOcrService.Result result = tiered.extract(front, back);
+
+		assertEquals("vision-text", result.tier());
+		assertEquals("anverso", result.report().fields().get("sexo").source());
+	}
+
+	@Test
+	void failsWhenNoTierReturnsText() {
+		FakeProvider document = new FakeProvider("vision-document", Map.of());
+		FakeProvider text = new FakeProvider("vision-text", Map.of());
+		TieredOcrService tiered = tiered("numeroDni", document, text);
+
+		assertThrows(IOException.class, () -> tiered.extract(front, back));
+		assertEquals(List.of(List.of("front", "back")), text.requested);
+		assertEquals(4, tiered.stats().imagesByTier().values().stream().mapToLong(Long::longValue).sum());
+	}
+
+	private static TieredOcrService tiered(String requiredFields, FakeProvider... providers) {
+		OcrService ocrService = new OcrService(List.of(providers), new ReplayOcrProvider("ocr-replay", 0, 0, ""));
+		StringBuilder tiers = new StringBuilder();
+		for (FakeProvider provider : providers) {
+			if (tiers.length() > 0) tiers.append(',');
+			tiers.append(provider.getProviderName());
+		}
+		return new TieredOcrService(ocrService, new DniParserService(), true, tiers.toString(), requiredFields, 0.6);
+	}
+
+	private static IngestedUpload image(String name) {
+		return new IngestedUpload(name.getBytes(), name, name + ".jpg", "image/jpeg", name);
+	}
+
+	/**
+	 * Proveedor con texto fijo por imagen: "" para las que no tiene, como un OCR que no lee nada.
+	 */
+	private static final class FakeProvider implements OcrProvider {
+
+		private final String name;
+		private final Map<String, String> texts;
+		private final List<List<String>> requested = new ArrayList<>();
+
+		FakeProvider(String name, Map<String, String> texts) {
+			this.name = name;
+			this.texts = texts;
+		}
+
+		@Override
+		public String extractText(MultipartFile image) {
+			return texts.getOrDefault(image.getName(), "");
+		}
+
+		@Override
+		public List<String> extractTexts(List<MultipartFile> images) throws IOException {
+			requested.add(images.stream().map(MultipartFile::getName).toList());
+			return OcrProvider.super.extractTexts(images);
+		}
+
+		@Override
+		public String getProviderName() {
+			return name;
+		}
+	}
+}
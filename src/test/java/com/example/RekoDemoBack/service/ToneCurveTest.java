@@ -0,0 +1,57 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.RescaleOp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ToneCurveTest {
+
+	@Test
+	void levelsMatchOnGrayAndRgb() {
+		ToneCurve levels = ToneCurve.levels(12, 240);
+
+		byte[] gray = new byte[256];
+		int[] rgb = new int[256];
+		for (int v = 0; v < 256; v++) {
+			gray[v] = (byte) v;
+			rgb[v] = (v << 16) | (v << 8) | v;
+		}
+		levels.apply(gray, gray.length);
+		levels.apply(rgb, rgb.length);
+
+		for (int v = 0; v < 256; v++) {
+			int expected = Math.max(0, Math.min(255, (v - 12) * 255 / 228));
+			assertEquals(expected, gray[v] & 0xFF, "v=" + v);
+			assertEquals((expected << 16) | (expected << 8) | expected, rgb[v], "v=" + v);
+		}
+	}
+
+	@Test
+	void gammaMatchesPowFormula() {
+		int[] table = ToneCurve.gamma(0.9).table();
+		for (int v = 0; v < 256; v++) {
+			assertEquals((int) (Math.pow(v / 255.0, 0.9) * 255.0), table[v], "v=" + v);
+		}
+	}
+
+	@Test
+	void linearMatchesRescaleOpOnIntRgb() {
+		int width = 256;
+		BufferedImage image = new BufferedImage(width, 1, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int v = 0; v < width; v++) {
+			pixels[v] = (v << 16) | ((255 - v) << 8) | (v / 2);
+		}
+
+		BufferedImage expected = new RescaleOp(1.15f, 8f, null).filter(image, null);
+		int[] actual = pixels.clone();
+		ToneCurve.linear(1.15f, 8f).apply(actual, actual.length);
+
+		assertArrayEquals(((DataBufferInt) expected.getRaster().getDataBuffer()).getData(), actual);
+	}
+}
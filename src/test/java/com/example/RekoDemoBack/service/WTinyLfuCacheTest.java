@@ -0,0 +1,114 @@
+package com.example.RekoDemoBack.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WTinyLfuCacheTest {
+
+	private static final long TTL = 60_000;
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+
+	@Test
+	void entriesMoveFromWindowToProbationToProtected() {
+		// Ventana de 100 bytes (1% de 10000)
+		WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(10_000, 64, 100, now::get);
+
+		cache.put("a", "A", 60, TTL);
+		assertEquals("window", cache.regionOf("a"));
+
+		// "b" desborda la ventana: "a" pasa a probation como candidata
+		cache.put("b", "B", 60, TTL);
+		assertEquals("probation", cache.regionOf("a"));
+		assertEquals("window", cache.regionOf("b"));
+
+		// Un acceso en probation la promociona a protected
+		assertEquals("A", cache.get("a"));
+		assertEquals("protected", cache.regionOf("a"));
+	}
+
+	@Test
+	void admissionFilterRejectsOneOffKey() {
+		WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(1_000, 64, 100, now::get);
+		for (int i = 0; i < 10; i++) {
+			cache.put("hot" + i, "v", 100, TTL);
+		}
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 10; i++) {
+				assertEquals("v", cache.get("hot" + i));
+			}
+		}
+		assertEquals(1_000, cache.stats().weightedBytes());
+
+		// Vista una sola vez: pierde contra la víctima de probation, que tiene más frecuencia
+		cache.put("oneOff", "x", 100, TTL);
+
+		assertNull(cache.regionOf("oneOff"));
+		for (int i = 0; i < 10; i++) {
+			assertEquals("v", cache.get("hot" + i));
+		}
+		assertEquals(1, cache.stats().evictions());
+	}
+
+	@Test
+	void entriesExpireWithTheClock() {
+		WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(10_000, 64, 100, now::get);
+		cache.put("short", "s", 10, 1_000);
+		cache.put("long", "l", 10, 5_000);
+
+		now.addAndGet(999);
+		assertEquals("s", cache.get("short"));
+
+		now.addAndGet(1);
+		assertNull(cache.get("short"));
+
+		// La rueda expira "long" al avanzar el reloj aunque no se vuelva a pedir esa clave
+		now.addAndGet(5_000);
+		cache.get("other");
+		assertEquals(0, cache.stats().entries());
+		assertEquals(2, cache.stats().expirations());
+		assertEquals(0, cache.stats().weightedBytes());
+	}
+
+	@Test
+	void weightStaysWithinBudget() {
+		WTinyLfuCache<String, String> cache = new WTinyLfuCache<>(1_000, 64, 100, now::get);
+		cache.put("a", "A", 300, TTL);
+		cache.put("b", "B", 200, TTL);
+		assertEquals(500, cache.stats().weightedBytes());
+
+		// Reemplazo: se descuenta el peso anterior
+		cache.put("a", "A2", 100, TTL);
+		assertEquals(300, cache.stats().weightedBytes());
+
+		// Más grande que todo el presupuesto: rechazada sin tocar el resto
+		cache.put("huge", "H", 1_001, TTL);
+		assertEquals(1, cache.stats().rejections());
+		assertEquals(300, cache.stats().weightedBytes());
+
+		for (int i = 0; i < 20; i++) {
+			cache.put("k" + i, "v", 150, TTL);
+			assertTrue(cache.stats().weightedBytes() <= 1_000, "peso " + cache.stats().weightedBytes());
+		}
+		assertTrue(cache.stats().evictions() > 0);
+
+		cache.invalidate("k19");
+		long weight = cache.stats().weightedBytes();
+		assertEquals(weight, sumOfPresent(cache));
+	}
+
+	private long sumOfPresent(WTinyLfuCache<String, String> cache) {
+		long sum = 0;
+		if (cache.regionOf("a") != null) sum += 100;
+		if (cache.regionOf("b") != null) sum += 200;
+		for (int i = 0; i < 20; i++) {
+			if (cache.regionOf("k" + i) != null) sum += 150;
+		}
+		return sum;
+	}
+}